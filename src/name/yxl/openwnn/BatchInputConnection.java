@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn;
+
+import android.os.Bundle;
+import android.text.SpannableStringBuilder;
+import android.util.Log;
+import android.view.KeyEvent;
+import android.view.inputmethod.CompletionInfo;
+import android.view.inputmethod.CorrectionInfo;
+import android.view.inputmethod.ExtractedText;
+import android.view.inputmethod.ExtractedTextRequest;
+import android.view.inputmethod.InputConnection;
+import android.view.inputmethod.InputConnectionWrapper;
+
+/**
+ * The input connection which batches the edits of an event.
+ * <br>
+ * Between {@link #begin} and {@link #end}, the edits are sent to the
+ * editor in one batch edit, which is begun at the first edit.  The
+ * composing text is held until another call needs it, so only the last
+ * one of the composing texts set in an event is sent.  The results of
+ * {@link #getTextBeforeCursor} and {@link #getCursorCapsMode} are kept
+ * until the next edit, and a shorter text before the cursor is cut out
+ * of a longer one already read.
+ * <p>
+ * Out of {@link #begin} and {@link #end}, every call is sent to the
+ * editor as it is.  This class must be used only on the UI thread.
+ * </p>
+ * The number of the calls sent to the editor in an event is logged
+ * if the debug log of "OpenWnn" is enabled.
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class BatchInputConnection extends InputConnectionWrapper {
+    /** The input connection of the editor */
+    private InputConnection mTarget;
+    /** The depth of {@link #begin} */
+    private int mDepth;
+    /** Whether the batch edit is begun on the editor */
+    private boolean mInBatchEdit;
+
+    /** The composing text not sent yet */
+    private SpannableStringBuilder mPendingText;
+    /** Whether {@code mPendingText} is to be sent */
+    private boolean mHasPendingText;
+    /** The cursor position of {@code mPendingText} */
+    private int mPendingCursor;
+
+    /** The text before the cursor read in the event */
+    private CharSequence mTextBefore;
+    /** The length requested for {@code mTextBefore} (-1 if not read) */
+    private int mTextBeforeLength;
+    /** The flags requested for {@code mTextBefore} */
+    private int mTextBeforeFlags;
+    /** The cursor caps mode read in the event */
+    private int mCapsMode;
+    /** The modes requested for {@code mCapsMode} (-1 if not read) */
+    private int mCapsModeRequest;
+
+    /** Number of the reads sent to the editor in the event */
+    private int mReadCount;
+    /** Number of the reads answered from the cache in the event */
+    private int mCachedCount;
+    /** Number of the edits sent to the editor in the event */
+    private int mEditCount;
+    /** Number of the composing texts dropped in the event */
+    private int mDroppedCount;
+
+    /**
+     * Constructor
+     */
+    public BatchInputConnection() {
+        super(null, true);
+        mPendingText = new SpannableStringBuilder();
+        mDepth = 0;
+        mInBatchEdit = false;
+        mHasPendingText = false;
+        clearCache();
+    }
+
+    /**
+     * Attach the input connection of the editor.
+     * <br>
+     * The edits held for the previous input connection are sent to it.
+     *
+     * @param target    The input connection of the editor
+     * @return          This object; {@code null} if {@code target} is {@code null}.
+     */
+    public InputConnection attach(InputConnection target) {
+        flush();
+        if (mInBatchEdit) {
+            super.endBatchEdit();
+            mInBatchEdit = false;
+        }
+        clearCache();
+        mTarget = target;
+        setTarget(target);
+        return (target != null) ? this : null;
+    }
+
+    /**
+     * Check whether an input connection is the one attached.
+     *
+     * @param target    The input connection
+     * @return          {@code true} if {@code target} is attached; {@code false} if not.
+     */
+    public boolean isAttached(InputConnection target) {
+        return target != null && target == mTarget;
+    }
+
+    /**
+     * Begin an event.
+     * <br>
+     * The calls can be nested.  Each call must be followed by {@link #end}.
+     */
+    public void begin() {
+        if (mDepth++ > 0) {
+            return;
+        }
+        clearCache();
+        mReadCount = 0;
+        mCachedCount = 0;
+        mEditCount = 0;
+        mDroppedCount = 0;
+    }
+
+    /**
+     * End an event.
+     * <br>
+     * At the end of the outermost event, the held composing text is sent
+     * and the batch edit is ended.
+     */
+    public void end() {
+        if (mDepth == 0 || --mDepth > 0) {
+            return;
+        }
+        try {
+            flush();
+            if (mInBatchEdit) {
+                mInBatchEdit = false;
+                super.endBatchEdit();
+                mEditCount++;
+            }
+        } finally {
+            clearCache();
+            if (Log.isLoggable("OpenWnn", Log.DEBUG) && (mReadCount + mEditCount) > 0) {
+                Log.d("OpenWnn", "BatchInputConnection: ipc=" + getIpcCount()
+                      + " (read=" + mReadCount + " edit=" + mEditCount
+                      + " cached=" + mCachedCount + " dropped=" + mDroppedCount + ")");
+            }
+        }
+    }
+
+    /**
+     * Get the number of the calls sent to the editor in the current (or last) event.
+     *
+     * @return          The number of the calls
+     */
+    public int getIpcCount() {
+        return mReadCount + mEditCount;
+    }
+
+    /**
+     * Send the held composing text to the editor.
+     */
+    public void flush() {
+        if (!mHasPendingText) {
+            return;
+        }
+        mHasPendingText = false;
+        super.setComposingText(mPendingText, mPendingCursor);
+        mEditCount++;
+    }
+
+    /**
+     * Clear the results of the reads.
+     */
+    private void clearCache() {
+        mTextBefore = null;
+        mTextBeforeLength = -1;
+        mCapsModeRequest = -1;
+    }
+
+    /**
+     * Prepare for an edit.
+     * <br>
+     * The batch edit is begun if it is not begun yet, and the results of
+     * the reads are cleared.
+     */
+    private void beforeEdit() {
+        clearCache();
+        if (mDepth > 0 && !mInBatchEdit) {
+            mInBatchEdit = true;
+            super.beginBatchEdit();
+            mEditCount++;
+        }
+    }
+
+    /**
+     * Prepare for a call except {@link #setComposingText} and {@link #commitText}.
+     *
+     * @param edit      {@code true} if the call is an edit
+     */
+    private void beforeCall(boolean edit) {
+        flush();
+        if (edit) {
+            beforeEdit();
+            mEditCount++;
+        } else {
+            mReadCount++;
+        }
+    }
+
+    /** @see android.view.inputmethod.InputConnection#setComposingText */
+    @Override public boolean setComposingText(CharSequence text, int newCursorPosition) {
+        if (mDepth == 0) {
+            clearCache();
+            return super.setComposingText(text, newCursorPosition);
+        }
+        beforeEdit();
+        if (mHasPendingText) {
+            mDroppedCount++;
+        }
+        /* copy the text because the caller may modify it before it is sent */
+        mPendingText.clearSpans();
+        mPendingText.replace(0, mPendingText.length(), text);
+        mPendingCursor = newCursorPosition;
+        mHasPendingText = true;
+        return true;
+    }
+
+    /** @see android.view.inputmethod.InputConnection#commitText */
+    @Override public boolean commitText(CharSequence text, int newCursorPosition) {
+        /* the committed text replaces the composing text, so the held one need not be sent */
+        if (mHasPendingText) {
+            mHasPendingText = false;
+            mDroppedCount++;
+        }
+        beforeEdit();
+        mEditCount++;
+        return super.commitText(text, newCursorPosition);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#getTextBeforeCursor */
+    @Override public CharSequence getTextBeforeCursor(int n, int flags) {
+        flush();
+        if (mDepth > 0 && mTextBeforeLength >= n && mTextBeforeFlags == flags) {
+            mCachedCount++;
+            CharSequence text = mTextBefore;
+            if (text == null || text.length() <= n) {
+                return text;
+            }
+            return text.subSequence(text.length() - n, text.length());
+        }
+        mReadCount++;
+        CharSequence text = super.getTextBeforeCursor(n, flags);
+        if (mDepth > 0) {
+            mTextBefore = text;
+            mTextBeforeLength = n;
+            mTextBeforeFlags = flags;
+        }
+        return text;
+    }
+
+    /** @see android.view.inputmethod.InputConnection#getCursorCapsMode */
+    @Override public int getCursorCapsMode(int reqModes) {
+        flush();
+        if (mDepth > 0 && mCapsModeRequest == reqModes) {
+            mCachedCount++;
+            return mCapsMode;
+        }
+        mReadCount++;
+        int mode = super.getCursorCapsMode(reqModes);
+        if (mDepth > 0) {
+            mCapsMode = mode;
+            mCapsModeRequest = reqModes;
+        }
+        return mode;
+    }
+
+    /** @see android.view.inputmethod.InputConnection#getTextAfterCursor */
+    @Override public CharSequence getTextAfterCursor(int n, int flags) {
+        beforeCall(false);
+        return super.getTextAfterCursor(n, flags);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#getSelectedText */
+    @Override public CharSequence getSelectedText(int flags) {
+        beforeCall(false);
+        return super.getSelectedText(flags);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#getExtractedText */
+    @Override public ExtractedText getExtractedText(ExtractedTextRequest request, int flags) {
+        beforeCall(false);
+        return super.getExtractedText(request, flags);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#deleteSurroundingText */
+    @Override public boolean deleteSurroundingText(int leftLength, int rightLength) {
+        beforeCall(true);
+        return super.deleteSurroundingText(leftLength, rightLength);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#setComposingRegion */
+    @Override public boolean setComposingRegion(int start, int end) {
+        beforeCall(true);
+        return super.setComposingRegion(start, end);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#finishComposingText */
+    @Override public boolean finishComposingText() {
+        beforeCall(true);
+        return super.finishComposingText();
+    }
+
+    /** @see android.view.inputmethod.InputConnection#commitCompletion */
+    @Override public boolean commitCompletion(CompletionInfo text) {
+        beforeCall(true);
+        return super.commitCompletion(text);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#commitCorrection */
+    @Override public boolean commitCorrection(CorrectionInfo correctionInfo) {
+        beforeCall(true);
+        return super.commitCorrection(correctionInfo);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#setSelection */
+    @Override public boolean setSelection(int start, int end) {
+        beforeCall(true);
+        return super.setSelection(start, end);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#performEditorAction */
+    @Override public boolean performEditorAction(int editorAction) {
+        beforeCall(true);
+        return super.performEditorAction(editorAction);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#performContextMenuAction */
+    @Override public boolean performContextMenuAction(int id) {
+        beforeCall(true);
+        return super.performContextMenuAction(id);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#beginBatchEdit */
+    @Override public boolean beginBatchEdit() {
+        beforeCall(true);
+        return super.beginBatchEdit();
+    }
+
+    /** @see android.view.inputmethod.InputConnection#endBatchEdit */
+    @Override public boolean endBatchEdit() {
+        beforeCall(true);
+        return super.endBatchEdit();
+    }
+
+    /** @see android.view.inputmethod.InputConnection#sendKeyEvent */
+    @Override public boolean sendKeyEvent(KeyEvent event) {
+        beforeCall(true);
+        return super.sendKeyEvent(event);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#clearMetaKeyStates */
+    @Override public boolean clearMetaKeyStates(int states) {
+        beforeCall(true);
+        return super.clearMetaKeyStates(states);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#reportFullscreenMode */
+    @Override public boolean reportFullscreenMode(boolean enabled) {
+        beforeCall(false);
+        return super.reportFullscreenMode(enabled);
+    }
+
+    /** @see android.view.inputmethod.InputConnection#performPrivateCommand */
+    @Override public boolean performPrivateCommand(String action, Bundle data) {
+        beforeCall(true);
+        return super.performPrivateCommand(action, data);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn;
+
+/**
+ * The interface of the signal to stop a search of {@link WnnEngine}.
+ * <br>
+ * An engine which is given the signal checks it in the loops of its
+ * search, and stops getting candidates when the search is cancelled.
+ * The candidates got from a cancelled search are incomplete, and must
+ * be discarded.
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public interface CancellationSignal {
+    /**
+     * Whether the current search is cancelled or not.
+     * <br>
+     * This method is called on the thread of the search.
+     *
+     * @return      {@code true} if cancelled; {@code false} if otherwise.
+     */
+    public boolean isCancelled();
+}
@@ -87,13 +87,28 @@ public interface CandidatesViewManager {
 
     /**
      * Display candidates.
+     * <br>
+     * The candidates are got page by page; the first page holds the
+     * candidates of the first view, and the rest are got when they are
+     * displayed (scroll or "read more").
      *
      * @param converter  The {@link WnnEngine} from which {@link CandidatesViewManager} gets the candidates
      *
-     * @see name.yxl.openwnn.WnnEngine#getNextCandidate
+     * @see name.yxl.openwnn.WnnEngine#getCandidates
      */
     public void displayCandidates(WnnEngine converter);
 
+    /**
+     * Display the candidates added after {@link #displayCandidates(WnnEngine)}.
+     * <br>
+     * This is called when the engine gets more candidates in the
+     * background.  Nothing is done if the candidates of the engine are
+     * not displayed now.
+     *
+     * @param converter  The {@link WnnEngine} given to {@link #displayCandidates(WnnEngine)}
+     */
+    public void updateCandidates(WnnEngine converter);
+
     /**
      * Clear and hide the candidates view.
      */
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn;
+
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.CharacterStyle;
+import android.view.inputmethod.InputConnection;
+
+/**
+ * The renderer of the composing text on the editor.
+ * <br>
+ * The display text is kept between the updates.  A new text replaces
+ * only the range which differs from the previous text, a span is moved
+ * only if its range is changed, and the display text is sent to the
+ * editor only if it differs from what the editor shows.  So a refresh
+ * which changes only the candidates does not cause any IPC.
+ * <p>
+ * An update consists of {@link #setText}, {@link #setSpan} for each span,
+ * and {@link #update} (or {@link #discard} if the text is not sent).
+ * {@link #invalidate} must be called whenever the text of the editor is
+ * changed by other means (commit, deletion, key events, etc.).
+ * </p>
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class ComposingRenderer {
+    /** The display text */
+    private SpannableStringBuilder mText;
+
+    /** The spans set in the current update */
+    private CharacterStyle[] mSpans;
+    /** Number of the spans set in the current update */
+    private int mSpanCount;
+    /** The spans set in the previous update */
+    private CharacterStyle[] mPrevSpans;
+    /** Number of the spans set in the previous update */
+    private int mPrevSpanCount;
+
+    /** Whether the display text is changed since it was sent */
+    private boolean mChanged;
+    /** Whether the editor shows the display text */
+    private boolean mSent;
+    /** The input connection which the display text was sent to */
+    private InputConnection mConnection;
+    /** The cursor position sent with the display text */
+    private int mCursor;
+
+    /**
+     * Constructor
+     */
+    public ComposingRenderer() {
+        mText = new SpannableStringBuilder();
+        mSpans = new CharacterStyle[4];
+        mPrevSpans = new CharacterStyle[4];
+        mSpanCount = 0;
+        mPrevSpanCount = 0;
+        mChanged = false;
+        mSent = false;
+    }
+
+    /**
+     * Get the display text.
+     *
+     * @return          The display text (must not be modified)
+     */
+    public CharSequence getText() {
+        return mText;
+    }
+
+    /**
+     * Get the length of the display text.
+     *
+     * @return          The length
+     */
+    public int length() {
+        return mText.length();
+    }
+
+    /**
+     * Set the text of the current update.
+     * <br>
+     * Only the range which differs from the previous text is replaced.
+     *
+     * @param text      The text ({@code null} is regarded as empty)
+     */
+    public void setText(CharSequence text) {
+        if (text == null) {
+            text = "";
+        }
+        SpannableStringBuilder disp = mText;
+        int oldLen = disp.length();
+        int newLen = text.length();
+        int max = Math.min(oldLen, newLen);
+
+        int prefix = 0;
+        while (prefix < max && disp.charAt(prefix) == text.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix == oldLen && prefix == newLen) {
+            /* not changed */
+            return;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+               && disp.charAt(oldLen - 1 - suffix) == text.charAt(newLen - 1 - suffix)) {
+            suffix++;
+        }
+        disp.replace(prefix, oldLen - suffix, text, prefix, newLen - suffix);
+        mChanged = true;
+    }
+
+    /**
+     * Set a span of the current update.
+     * <br>
+     * The span is moved only if its range is changed.  A span of no
+     * character is ignored because it is not visible.
+     *
+     * @param style     The style
+     * @param start     The start position
+     * @param end       The end position
+     */
+    public void setSpan(CharacterStyle style, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        if (mSpanCount >= mSpans.length) {
+            CharacterStyle[] spans = new CharacterStyle[mSpans.length * 2];
+            System.arraycopy(mSpans, 0, spans, 0, mSpanCount);
+            mSpans = spans;
+        }
+        mSpans[mSpanCount++] = style;
+
+        SpannableStringBuilder disp = mText;
+        if (disp.getSpanStart(style) != start || disp.getSpanEnd(style) != end) {
+            disp.setSpan(style, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            mChanged = true;
+        }
+    }
+
+    /**
+     * Finish the current update and send the display text to the editor.
+     * <br>
+     * The text is not sent if the editor already shows it.
+     *
+     * @param ic        The input connection
+     * @param cursor    The cursor position (see {@link InputConnection#setComposingText})
+     * @return          {@code true} if the text is sent; {@code false} if not.
+     */
+    public boolean update(InputConnection ic, int cursor) {
+        finishSpans();
+        if (mSent && !mChanged && ic == mConnection && cursor == mCursor) {
+            return false;
+        }
+        ic.setComposingText(mText, cursor);
+        mConnection = ic;
+        mCursor = cursor;
+        mSent = true;
+        mChanged = false;
+        return true;
+    }
+
+    /**
+     * Finish the current update without sending the display text.
+     */
+    public void discard() {
+        finishSpans();
+        mSent = false;
+    }
+
+    /**
+     * Notify that the text of the editor is changed by other means.
+     * <br>
+     * The display text is sent on the next update.
+     */
+    public void invalidate() {
+        mSent = false;
+    }
+
+    /**
+     * Check the selection of the editor.
+     * <br>
+     * If the composing region or the cursor of the editor differs from
+     * what was sent, the display text is sent on the next update.
+     *
+     * @param newSelStart       The start of the selection
+     * @param newSelEnd         The end of the selection
+     * @param candidatesStart   The start of the composing region (-1 if none)
+     * @param candidatesEnd     The end of the composing region (-1 if none)
+     */
+    public void onUpdateSelection(int newSelStart, int newSelEnd, int candidatesStart, int candidatesEnd) {
+        if (!mSent) {
+            return;
+        }
+        int length = mText.length();
+        boolean composing = (candidatesStart >= 0 && candidatesEnd >= 0);
+        if (length == 0) {
+            if (composing) {
+                mSent = false;
+            }
+            return;
+        }
+        if (!composing || (candidatesEnd - candidatesStart) != length) {
+            mSent = false;
+            return;
+        }
+        int expected = (mCursor > 0) ? (candidatesEnd + mCursor - 1) : (candidatesStart + mCursor);
+        if (newSelStart != expected || newSelEnd != expected) {
+            mSent = false;
+        }
+    }
+
+    /**
+     * Remove the spans which are not set in the current update.
+     */
+    private void finishSpans() {
+        for (int i = 0; i < mPrevSpanCount; i++) {
+            CharacterStyle style = mPrevSpans[i];
+            boolean used = false;
+            for (int j = 0; j < mSpanCount; j++) {
+                if (mSpans[j] == style) {
+                    used = true;
+                    break;
+                }
+            }
+            if (!used && mText.getSpanStart(style) >= 0) {
+                mText.removeSpan(style);
+                mChanged = true;
+            }
+            mPrevSpans[i] = null;
+        }
+
+        CharacterStyle[] tmp = mPrevSpans;
+        mPrevSpans = mSpans;
+        mPrevSpanCount = mSpanCount;
+        mSpans = tmp;
+        mSpanCount = 0;
+    }
+}
@@ -61,6 +61,46 @@ public class ComposingText {
     protected ArrayList<StrSegment>[] mStringLayer;
     /** Cursor position */
     protected int[] mCursor;
+    /** Generation number (incremented on every modification) */
+    private volatile int mGeneration = 0;
+
+    /** Cached string of each layer ({@code null} if not cached) */
+    private String[] mLayerString;
+    /** Offset of each segment in the cached string of each layer (the length at the end) */
+    private int[][] mLayerOffset;
+    /** Work area for making the cached string */
+    private StringBuilder mLayerBuffer;
+
+    /** Whether the layers are shared with a snapshot (they are copied before modified) */
+    private boolean mShared = false;
+    /** The epoch of the segments (incremented when a snapshot is taken) */
+    private int mEpoch = 0;
+
+    /** Max number of the segments kept for reuse */
+    private static final int SEGMENT_POOL_SIZE = 64;
+    /** The segments kept for reuse ({@code null} until a segment is recycled) */
+    private Segment[] mSegmentPool;
+    /** Number of the segments kept for reuse */
+    private int mSegmentPoolCount = 0;
+
+    /**
+     * The segment made by {@link ComposingText}.
+     * <br>
+     * Only this type of segments is reused, because the segments
+     * given by the others may be referred to after removed.
+     */
+    private static class Segment extends StrSegment {
+        /**
+         * Constructor
+         *
+         * @param str       The string
+         * @param from      The start position
+         * @param to        The end position
+         */
+        Segment(String str, int from, int to) {
+            super(str, from, to);
+        }
+    }
 
     /**
      * Constructor
@@ -68,12 +108,104 @@ public class ComposingText {
     public ComposingText() {
         mStringLayer = new ArrayList[MAX_LAYER];
         mCursor = new int[MAX_LAYER];
+        mLayerString = new String[MAX_LAYER];
+        mLayerOffset = new int[MAX_LAYER][];
+        mLayerBuffer = new StringBuilder();
         for (int i = 0; i < MAX_LAYER; i++) {
             mStringLayer[i] = new ArrayList<StrSegment>();
             mCursor[i] = 0;
         }
     }
 
+    /**
+     * Get the generation number.
+     * <br>
+     * The generation number is incremented whenever the segments or the
+     * cursor are modified.  It is safe to call this from any thread.
+     *
+     * @return          The generation number
+     */
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Create a copy of this composing text.
+     * <br>
+     * The copy shares the layers and the segments with this object.
+     * When either of them is modified, the layers are copied at first,
+     * and each shared segment is copied before it is modified (copy on
+     * write).  The shared segments are never modified, so the copy can
+     * be read by another thread while this object is modified.
+     *
+     * @return          The copy
+     */
+    public ComposingText snapshot() {
+        ComposingText copy = new ComposingText(this);
+        mShared = true;
+        mEpoch++;
+        return copy;
+    }
+
+    /**
+     * Constructor of a snapshot
+     *
+     * @param src       The composing text shared
+     */
+    private ComposingText(ComposingText src) {
+        mStringLayer = src.mStringLayer.clone();
+        mCursor = src.mCursor.clone();
+        mLayerString = new String[MAX_LAYER];
+        mLayerOffset = new int[MAX_LAYER][];
+        mLayerBuffer = new StringBuilder();
+        mGeneration = src.mGeneration;
+        mShared = true;
+    }
+
+    /**
+     * Get a segment to insert into this composing text.
+     * <br>
+     * The segment removed from this composing text is reused if possible.
+     * The segment must not be referred to after it is removed.
+     *
+     * @param str       The string
+     * @param from      The start position
+     * @param to        The end position
+     * @return          The segment
+     */
+    public StrSegment obtainStrSegment(String str, int from, int to) {
+        Segment ss;
+        if (mSegmentPoolCount > 0) {
+            ss = mSegmentPool[--mSegmentPoolCount];
+            mSegmentPool[mSegmentPoolCount] = null;
+            ss.string = str;
+            ss.from = from;
+            ss.to = to;
+        } else {
+            ss = new Segment(str, from, to);
+        }
+        own(ss);
+        return ss;
+    }
+
+    /**
+     * Keep a removed segment for reuse.
+     *
+     * @param ss        The segment which is removed
+     */
+    private void recycleStrSegment(StrSegment ss) {
+        if (!(ss instanceof Segment) || !isOwned(ss)) {
+            return;
+        }
+        if (mSegmentPool == null) {
+            mSegmentPool = new Segment[SEGMENT_POOL_SIZE];
+        }
+        if (mSegmentPoolCount < SEGMENT_POOL_SIZE) {
+            ss.string = null;
+            mSegmentPool[mSegmentPoolCount++] = (Segment) ss;
+        }
+    }
+
     /**
      * Output internal information to the log.
      */
@@ -123,14 +255,28 @@ public class ComposingText {
      */
     public String toString(int layer, int from, int to) {
         try {
-            StringBuffer buf = new StringBuffer();
             ArrayList<StrSegment> strLayer = mStringLayer[layer];
-            
-            for (int i = from; i <= to; i++) {
-                StrSegment ss = strLayer.get(i);
-                buf.append(ss.string);
+            if (from > to) {
+                return "";
+            }
+            if (from < 0 || to >= strLayer.size()) {
+                return null;
             }
-            return buf.toString();
+            if (from == 0 && to == strLayer.size() - 1) {
+                return getLayerString(layer);
+            }
+            String str = mLayerString[layer];
+            if (str == null) {
+                /* make only the range (the whole string may not be used) */
+                StringBuilder buf = mLayerBuffer;
+                buf.setLength(0);
+                for (int i = from; i <= to; i++) {
+                    buf.append(strLayer.get(i).string);
+                }
+                return buf.toString();
+            }
+            int[] offset = mLayerOffset[layer];
+            return str.substring(offset[from], offset[to + 1]);
         } catch (Exception ex) {
             return null;
         }
@@ -146,6 +292,136 @@ public class ComposingText {
         return this.toString(layer, 0, mStringLayer[layer].size() - 1);
     }
 
+    /**
+     * Get the length of the string of the range of segments.
+     * <br>
+     * This is the same as {@code toString(layer, from, to).length()}
+     * without making the string.
+     *
+     * @param layer     Layer
+     * @param from      Range from
+     * @param to        Range to
+     * @return          The length; 0 if error occurs.
+     */
+    public int length(int layer, int from, int to) {
+        if (layer < 0 || layer >= MAX_LAYER || from > to
+            || from < 0 || to >= mStringLayer[layer].size()) {
+            return 0;
+        }
+        getLayerString(layer);
+        int[] offset = mLayerOffset[layer];
+        return offset[to + 1] - offset[from];
+    }
+
+    /**
+     * Get the length of the string of the layer.
+     *
+     * @param layer     Layer
+     * @return          The length; 0 if error occurs.
+     */
+    public int length(int layer) {
+        if (layer < 0 || layer >= MAX_LAYER) {
+            return 0;
+        }
+        return length(layer, 0, mStringLayer[layer].size() - 1);
+    }
+
+    /**
+     * Get the cached string of the layer.
+     * <br>
+     * The string and the offsets of the segments are made if not cached.
+     *
+     * @param layer     Layer
+     * @return          The string of the layer
+     */
+    private String getLayerString(int layer) {
+        String str = mLayerString[layer];
+        if (str != null) {
+            return str;
+        }
+        ArrayList<StrSegment> strLayer = mStringLayer[layer];
+        int size = strLayer.size();
+        int[] offset = mLayerOffset[layer];
+        if (offset == null || offset.length < size + 1) {
+            offset = mLayerOffset[layer] = new int[size + 8];
+        }
+        StringBuilder buf = mLayerBuffer;
+        buf.setLength(0);
+        for (int i = 0; i < size; i++) {
+            offset[i] = buf.length();
+            buf.append(strLayer.get(i).string);
+        }
+        offset[size] = buf.length();
+        str = mLayerString[layer] = buf.toString();
+        return str;
+    }
+
+    /**
+     * Notify that the segments are going to be modified.
+     * <br>
+     * The generation number is incremented, and the cached strings are
+     * discarded.  The segments shared with a snapshot are copied.
+     */
+    private void modified() {
+        mGeneration++;
+        for (int i = 0; i < MAX_LAYER; i++) {
+            mLayerString[i] = null;
+        }
+        if (mShared) {
+            /* the segments are copied when each of them is modified */
+            for (int i = 0; i < MAX_LAYER; i++) {
+                mStringLayer[i] = new ArrayList<StrSegment>(mStringLayer[i]);
+            }
+            mShared = false;
+        }
+    }
+
+    /**
+     * Mark a segment as owned by this composing text.
+     *
+     * @param ss        The segment
+     */
+    private void own(StrSegment ss) {
+        ss.owner = this;
+        ss.epoch = mEpoch;
+    }
+
+    /**
+     * Check whether a segment may be modified in place.
+     *
+     * @param ss        The segment
+     * @return          {@code true} if the segment is not shared with any snapshot.
+     */
+    private boolean isOwned(StrSegment ss) {
+        return ss.owner == this && ss.epoch == mEpoch;
+    }
+
+    /**
+     * Get a segment of a layer to modify.
+     * <br>
+     * The segment shared with a snapshot is replaced with its copy.
+     *
+     * @param strLayer  The layer (not shared with any snapshot)
+     * @param index     The index of the segment
+     * @return          The segment which may be modified
+     */
+    private StrSegment getWritableSegment(ArrayList<StrSegment> strLayer, int index) {
+        StrSegment ss = strLayer.get(index);
+        if (isOwned(ss)) {
+            return ss;
+        }
+        StrSegment copy;
+        if (ss instanceof StrSegmentClause) {
+            copy = new StrSegmentClause(((StrSegmentClause)ss).clause, ss.from, ss.to);
+            copy.string = ss.string;
+            own(copy);
+        } else {
+            copy = obtainStrSegment(ss.string, ss.from, ss.to);
+        }
+        strLayer.set(index, copy);
+        return copy;
+    }
+
     /**
      * Update the upper layer's data.
      *
@@ -162,12 +438,13 @@ public class ComposingText {
 
         int uplayer = layer + 1;
         ArrayList<StrSegment> strUplayer = mStringLayer[uplayer];
+        mLayerString[uplayer] = null;
         if (strUplayer.size() <= 0) {
             /* 
              * if there is no element on above layer,
              * add a element includes whole elements of the lower layer.
              */
-            strUplayer.add(new StrSegment(toString(layer), 0, mStringLayer[layer].size() - 1));
+            strUplayer.add(obtainStrSegment(toString(layer), 0, mStringLayer[layer].size() - 1));
             modifyUpper(uplayer, 0, 1, 0);
             return;
         }
@@ -177,6 +454,7 @@ public class ComposingText {
         StrSegment last = strUplayer.get(strUplayer.size() - 1);
         if (last.to < mod_from) {
             /* add at the tail */
+            last = getWritableSegment(strUplayer, strUplayer.size() - 1);
             last.to = mod_to;
             last.string = toString(layer, last.from, last.to);
             modifyUpper(uplayer, strUplayer.size()-1, 1, 1);
@@ -185,7 +463,9 @@ public class ComposingText {
 
         int uplayer_mod_from = -1;
         int uplayer_org_to = -1;
-        for (int i = 0; i < strUplayer.size(); i++) {
+        /* the segments before the one including mod_from are not affected */
+        int start = searchSegment(strUplayer, mod_from);
+        for (int i = (start < 0)? 0 : start; i < strUplayer.size(); i++) {
             StrSegment ss = strUplayer.get(i);
             if (ss.from > mod_from) {
                 if (ss.to <= org_to) {
@@ -219,11 +499,11 @@ public class ComposingText {
         int diff = mod_len - org_len;
         if (uplayer_mod_from >= 0) {
             /* update an element */
-            StrSegment ss = strUplayer.get(uplayer_mod_from);
+            StrSegment ss = getWritableSegment(strUplayer, uplayer_mod_from);
             int last_to = ss.to;
             int next = uplayer_mod_from + 1;
             for (int i = next; i <= uplayer_org_to; i++) {
-                ss = strUplayer.get(next);
+                ss = getWritableSegment(strUplayer, next);
                 if (last_to > ss.to) {
                     last_to = ss.to;
                 }
@@ -234,7 +514,7 @@ public class ComposingText {
             ss.string = toString(layer, ss.from, ss.to);
             
             for (int i = next; i < strUplayer.size(); i++) {
-                ss = strUplayer.get(i);
+                ss = getWritableSegment(strUplayer, i);
                 ss.from += diff;
                 ss.to   += diff;
             }
@@ -242,11 +522,11 @@ public class ComposingText {
             modifyUpper(uplayer, uplayer_mod_from, 1, uplayer_org_to - uplayer_mod_from + 1);
         } else {
             /* add an element at the head */
-            StrSegment ss = new StrSegment(toString(layer, mod_from, mod_to),
-                                           mod_from, mod_to); 
+            StrSegment ss = obtainStrSegment(toString(layer, mod_from, mod_to),
+                                             mod_from, mod_to);
             strUplayer.add(0, ss);
             for (int i = 1; i < strUplayer.size(); i++) {
-                ss = strUplayer.get(i);
+                ss = getWritableSegment(strUplayer, i);
                 ss.from += diff;
                 ss.to   += diff;
             }
@@ -263,7 +543,9 @@ public class ComposingText {
      * @param str   String
      **/
     public void insertStrSegment(int layer, StrSegment str) {
+        modified();
         int cursor = mCursor[layer];
+        own(str);
         mStringLayer[layer].add(cursor, str);
         modifyUpper(layer, cursor, 1, 0);
         setCursor(layer, cursor + 1);
@@ -277,17 +559,19 @@ public class ComposingText {
      * @param str           String
      **/
     public void insertStrSegment(int layer1, int layer2, StrSegment str) {
+        modified();
+        own(str);
         mStringLayer[layer1].add(mCursor[layer1], str);
         mCursor[layer1]++;
         
         for (int i = layer1 + 1; i <= layer2; i++) {
             int pos = mCursor[i-1] - 1;
-            StrSegment tmp = new StrSegment(str.string, pos, pos);
+            StrSegment tmp = obtainStrSegment(str.string, pos, pos);
             ArrayList<StrSegment> strLayer = mStringLayer[i];
             strLayer.add(mCursor[i], tmp);
             mCursor[i]++;
             for (int j = mCursor[i]; j < strLayer.size(); j++) {
-                StrSegment ss = strLayer.get(j);
+                StrSegment ss = getWritableSegment(strLayer, j);
                 ss.from++;
                 ss.to++;
             }
@@ -306,6 +590,7 @@ public class ComposingText {
      * @param to        Replace to
      **/
     protected void replaceStrSegment0(int layer, StrSegment[] str, int from, int to) {
+        modified();
         ArrayList<StrSegment> strLayer = mStringLayer[layer];
 
         if (from < 0 || from > strLayer.size()) {
@@ -314,11 +599,11 @@ public class ComposingText {
         if (to < 0 || to > strLayer.size()) {
             to = strLayer.size();
         }
-        for (int i = from; i <= to; i++) {
-            strLayer.remove(from);
-        }
-        for (int i = str.length - 1; i >= 0; i--) {
-            strLayer.add(from, str[i]);
+        removeSegments(strLayer, from, to);
+        strLayer.ensureCapacity(strLayer.size() + str.length);
+        for (int i = 0; i < str.length; i++) {
+            own(str[i]);
+            strLayer.add(from + i, str[i]);
         }
         
         modifyUpper(layer, from, str.length, to - from + 1);
@@ -357,6 +642,7 @@ public class ComposingText {
      * @param to    Delete to
      **/
     public void deleteStrSegment(int layer, int from, int to) {
+        modified();
         int[] fromL = new int[] {-1, -1, -1};
         int[] toL   = new int[] {-1, -1, -1};
 
@@ -388,7 +674,8 @@ public class ComposingText {
                 int boundary_from = -1;
                 int boundary_to   = -1;
                 ArrayList<StrSegment> strLayer = mStringLayer[lv];
-                for (int i = 0; i < strLayer.size(); i++) {
+                int start = searchSegment(strLayer, fromL[lv-1]);
+                for (int i = (start < 0)? 0 : start; i < strLayer.size(); i++) {
                     StrSegment ss = (StrSegment)strLayer.get(i);
                     if ((ss.from >= fromL[lv-1] && ss.from <= toL[lv-1]) ||
                         (ss.to >= fromL[lv-1] && ss.to <= toL[lv-1]) ) {
@@ -412,7 +699,7 @@ public class ComposingText {
                     deleteStrSegment0(lv, fromL[lv] + 1, toL[lv], diff);
                     boundary_to -= diff;
                     StrSegment[] tmp = new StrSegment[] {
-                        (new StrSegment(toString(lv-1), boundary_from, boundary_to))
+                        obtainStrSegment(toString(lv-1), boundary_from, boundary_to)
                     };
                     replaceStrSegment0(lv, tmp, fromL[lv], fromL[lv]);
                     return;
@@ -433,17 +720,66 @@ public class ComposingText {
      * @param diff      Differential
      **/
     private void deleteStrSegment0(int layer, int from, int to, int diff) {
+        modified();
         ArrayList<StrSegment> strLayer = mStringLayer[layer];
         if (diff != 0) {
             for (int i = to + 1; i < strLayer.size(); i++) {
-                StrSegment ss = strLayer.get(i);
+                StrSegment ss = getWritableSegment(strLayer, i);
                 ss.from -= diff;
                 ss.to   -= diff;
             }
         }
-        for (int i = from; i <= to; i++) {
-            strLayer.remove(from);
+        removeSegments(strLayer, from, to);
+    }
+
+    /**
+     * Remove the range of segments from a layer.
+     *
+     * @param strLayer  The layer
+     * @param from      Remove from
+     * @param to        Remove to
+     */
+    private void removeSegments(ArrayList<StrSegment> strLayer, int from, int to) {
+        if (from > to) {
+            return;
         }
+        if (to < strLayer.size()) {
+            for (int i = from; i <= to; i++) {
+                recycleStrSegment(strLayer.get(i));
+            }
+            /* shift the following segments at once */
+            strLayer.subList(from, to + 1).clear();
+        } else {
+            for (int i = from; i <= to; i++) {
+                recycleStrSegment(strLayer.remove(from));
+            }
+        }
+    }
+
+    /**
+     * Search the segment which starts at or before the position of the lower layer.
+     * <br>
+     * The segments of a layer are sorted and do not overlap each other,
+     * so the segment which may include the position is found by binary search.
+     *
+     * @param strLayer  The layer
+     * @param pos       The position of the lower layer
+     * @return          The index of the last segment whose {@code from} is not greater than {@code pos}; -1 if none.
+     */
+    private static int searchSegment(ArrayList<StrSegment> strLayer, int pos) {
+        int low = 0;
+        int high = strLayer.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (strLayer.get(mid).from <= pos) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
     }
 
     /**
@@ -469,12 +805,16 @@ public class ComposingText {
 
     /**
      * Get the string layer.
+     * <br>
+     * The layer may be modified by the caller, so it is not shared with
+     * a snapshot any longer.
      *
      * @param layer     Layer
      * @return          {@link ArrayList} of {@link StrSegment}; {@code null} if error.
      **/
     public ArrayList<StrSegment> getStringLayer(int layer) {
         try {
+            modified();
             return mStringLayer[layer];
         } catch (Exception ex) {
             return null;
@@ -495,7 +835,8 @@ public class ComposingText {
         int uplayer = layer + 1;
         int i;
         ArrayList<StrSegment> strLayer = mStringLayer[uplayer];
-        for (i = 0; i < strLayer.size(); i++) {
+        int start = searchSegment(strLayer, pos);
+        for (i = (start < 0)? 0 : start; i < strLayer.size(); i++) {
             StrSegment ss = strLayer.get(i);
             if (ss.from <= pos && pos <= ss.to) {
                 break;
@@ -518,6 +859,9 @@ public class ComposingText {
         if (pos < 0) {
             pos = 0;
         }
+        if (pos != mCursor[layer]) {
+            mGeneration++;
+        }
         if (layer == 0) {
             mCursor[0] = pos;
             mCursor[1] = included(0, pos);
@@ -571,9 +915,21 @@ public class ComposingText {
      * Clear all information.
      */
     public void clear() {
+        mGeneration++;
         for (int i = 0; i < MAX_LAYER; i++) {
-            mStringLayer[i].clear();
+            mLayerString[i] = null;
+            if (mShared) {
+                /* leave the segments to the snapshot */
+                mStringLayer[i] = new ArrayList<StrSegment>();
+            } else {
+                ArrayList<StrSegment> strLayer = mStringLayer[i];
+                for (int j = 0; j < strLayer.size(); j++) {
+                    recycleStrSegment(strLayer.get(j));
+                }
+                strLayer.clear();
+            }
             mCursor[i] = 0;
         }
+        mShared = false;
     }
 }
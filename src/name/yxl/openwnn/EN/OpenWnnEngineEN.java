@@ -22,6 +22,8 @@ import java.util.ArrayList;
 import name.yxl.openwnn.*;
 
 import android.content.SharedPreferences;
+import android.os.Process;
+import android.util.Log;
 
 /**
  * The OpenWnn engine class for English IME.
@@ -39,6 +41,24 @@ public class OpenWnnEngineEN implements WnnEngine {
     public static final int FREQ_USER = 500;
     /** Limitation of predicted candidates */
     public static final int PREDICT_LIMIT = 300;
+    /** Number of the completions held for a short prefix */
+    public static final int PREFIX_COMPLETION_LIMIT = 64;
+    /** Number of the short prefixes held in the completion table */
+    public static final int PREFIX_COMPLETION_CAPACITY = 128;
+    /** Score added to the latest word which has followed the previous word in the learning dictionary */
+    public static final int FREQ_LEARNED_BIGRAM = 100;
+    /** Number of the next word candidates */
+    public static final int NEXT_WORD_LIMIT = 20;
+    /** Number of the top candidates re-ranked by the previous word */
+    public static final int RERANK_WINDOW = 32;
+    /** The library path of the system dictionaries */
+    private static final String DICTIONARY_LIBRARY_PATH = "/data/data/name.yxl.openwnn/lib/libname_yxl_libWnnEngDic.so";
+    /** Time budget(msec.) of the spell correction for a key input */
+    public static final int CORRECTION_BUDGET_MS = 20;
+    /** Minimum length of the input to be corrected */
+    public static final int MIN_CORRECTION_LENGTH = 2;
+    /** Number of the words held in the pool for the candidates */
+    public static final int WORD_POOL_CAPACITY = 256;
 
     /** OpenWnn dictionary */
 	private   WnnDictionary mDictionary;
@@ -52,8 +72,41 @@ public class OpenWnnEngineEN implements WnnEngine {
     private String        mSearchKey;
     /** Number of output candidates */
     private int           mOutputNum;
+    /** Number of the candidates returned (the words after them are referred to by no one) */
+    private int           mServedNum;
+    /** The pool of the words for the candidates */
+    private WnnWordPool   mWordPool;
     /** The candidate filter */
     private CandidateFilter mFilter = null;
+    /** Type of the dictionary */
+    private int           mDictType = DICT_DEFAULT;
+    /** The table of the top completions of short prefixes */
+    private PrefixCompletionTable mPrefixTable;
+    /** The completions of the current prefix ({@code null} if searching the dictionaries) */
+    private PrefixCompletionTable.Entry mPrefixEntry;
+    /** Index of the next word in {@code mPrefixEntry} */
+    private int           mPrefixIndex;
+
+    /** The previous word (lower case; {@code null} if the sequence is broken) */
+    private WnnWord       mPreviousWord;
+    /** The words which have followed the previous word in the learning dictionary (the latest first) */
+    private ArrayList<WnnWord> mLearnedFollowers;
+    /** Ranks of the strokes of {@code mLearnedFollowers} ([stroke] -> index in the list) */
+    private HashMap<String, Integer> mLearnedFollowerRank;
+    /** Whether the candidates are the next words of the previous word or not */
+    private boolean       mNextWordMode;
+    /** Whether the top candidates are re-ranked or not */
+    private boolean       mReranked;
+    /** The spell corrector ({@code null} until compiled by {@code mCorrectorCompiler}) */
+    private volatile SpellCorrector mCorrector;
+    /** The thread compiling the spell corrector ({@code null} if not started) */
+    private Thread        mCorrectorCompiler;
+    /** Whether the approximate pattern substitutes for the spell corrector or not */
+    private boolean       mApproxFallback;
+    /** Number of the corrections of the current input */
+    private int           mCorrectionCount;
+    /** Scores of the candidates (work area for re-ranking) */
+    private int[]         mScores = new int[RERANK_WINDOW + SpellCorrector.MAX_CORRECTIONS];
     
     /**
      * Candidate's case
@@ -67,6 +120,19 @@ public class OpenWnnEngineEN implements WnnEngine {
     private static final int CASE_UPPER = 1;
     private static final int CASE_HEAD_UPPER = 3;
 
+    /** Maximum number of the cached candidates whose case is adjusted */
+    private static final int CASE_CACHE_SIZE = 512;
+    /** Cache of the candidates whose case is adjusted ([candidate] -> adjusted) */
+    private HashMap<String, String> mCaseCache = new HashMap<String, String>();
+    /** Case of the candidates in {@code mCaseCache} */
+    private int           mCaseCacheType = CASE_LOWER;
+    /** Buffer for converting the case (work area) */
+    private char[]        mCaseBuffer = new char[32];
+    /** Whether the default candidates are added or not */
+    private boolean       mDefaultCandidatesAdded;
+    /** The signal to stop the search ({@code null} if not cancellable) */
+    private CancellationSignal mCancellation = null;
+
     /**
      * Constructor
      * 
@@ -75,12 +141,22 @@ public class OpenWnnEngineEN implements WnnEngine {
     public OpenWnnEngineEN(String writableDictionaryName) {
         mConvResult = new ArrayList<WnnWord>();
         mCandTable = new HashMap<String, WnnWord>();
+        mPrefixTable = new PrefixCompletionTable(PREFIX_COMPLETION_LIMIT, PREFIX_COMPLETION_CAPACITY);
+        mLearnedFollowers = new ArrayList<WnnWord>();
+        mLearnedFollowerRank = new HashMap<String, Integer>();
+        mCorrector = null;
+        mCorrectorCompiler = null;
+        mApproxFallback = false;
         mSearchKey = null;
         mOutputNum = 0;
 
-        mDictionary = new OpenWnnDictionaryImpl( 
-        		"/data/data/name.yxl.openwnn/lib/libname_yxl_libWnnEngDic.so",
+        mWordPool = new WnnWordPool(WORD_POOL_CAPACITY);
+        OpenWnnDictionaryImpl dictionary = new OpenWnnDictionaryImpl( 
+        		DICTIONARY_LIBRARY_PATH,
         		writableDictionaryName);
+        dictionary.setWordPool(mWordPool);
+        dictionary.setEvictionListener(mPrefixTable);
+        mDictionary = dictionary;
         mDictionary.clearDictionary( );
         
         mDictionary.setDictionary(0, 400, 550);
@@ -101,54 +177,304 @@ public class OpenWnnEngineEN implements WnnEngine {
      * @return			A candidate; {@code null} if no candidate for the index.
      */
     private WnnWord getCandidate(int index) {
-        WnnWord word;
-        /* search the candidate from the dictionaries */
-        while (mConvResult.size() < PREDICT_LIMIT && index >= mConvResult.size()) {
-            while ((word = mDictionary.getNextWord()) != null) {
-                /* adjust the case of letter */
-                char c = word.candidate.charAt(0);
-                if (mCandidateCase == CASE_LOWER) {
-                    if (Character.isLowerCase(c)) {
-                        break;
-                    }
-                } else if (mCandidateCase == CASE_HEAD_UPPER) {
-                    if (Character.isLowerCase(c)) {
-                        word.candidate = Character.toString(Character.toUpperCase(c)) + word.candidate.substring(1);
-                    }
-                    break;
-                } else {
-                    word.candidate = word.candidate.toUpperCase();
-                    break;
-                }
-            }
-            if (word == null) {
-                break;
+        if (mNextWordMode) {
+            /* the next word candidates are made by predict() */
+            return serveCandidate(index);
+        }
+
+        if (!mReranked) {
+            mReranked = true;
+            if (mPreviousWord != null || mCorrectionCount > 0) {
+                /* re-rank the top candidates with the corrections by the previous word */
+                searchCandidates(RERANK_WINDOW - 1);
+                addCorrections();
+                rerankCandidates();
             }
-            /* check duplication */
-            addCandidate(word);
         }
 
+        /* search the candidate from the dictionaries */
+        searchCandidates(index);
+
         /* get the default candidates */
-        if (index >= mConvResult.size()) {
+        if (index >= mConvResult.size() && !mDefaultCandidatesAdded) {
+            mDefaultCandidatesAdded = true;
+
             /* input string itself */
-            addCandidate(new WnnWord(mInputString, mSearchKey));
+            addDefaultCandidate(mInputString);
 
             /* Capitalize the head of input */
             if (mSearchKey.length() > 1) {
-                addCandidate(new WnnWord(mSearchKey.substring(0,1).toUpperCase() + mSearchKey.substring(1),
-                                         mSearchKey));
+                addDefaultCandidate(toCase(mSearchKey, CASE_HEAD_UPPER));
             }
 
             /* Capitalize all */
-            addCandidate(new WnnWord(mSearchKey.toUpperCase(), mSearchKey));
+            addDefaultCandidate(toCase(mSearchKey, CASE_UPPER));
         }
 
+        return serveCandidate(index);
+    }
+
+    /**
+     * Return a candidate in the list.
+     *
+     * @param index		Index of candidate
+     * @return			A candidate; {@code null} if no candidate for the index.
+     */
+    private WnnWord serveCandidate(int index) {
         if (index >= mConvResult.size()) {
             return null;
         }
+        if (index >= mServedNum) {
+            mServedNum = index + 1;
+        }
         return mConvResult.get(index);
     }
 
+    /**
+     * Search the candidates from the dictionaries.
+     *
+     * @param index		Index of candidate to be searched
+     */
+    private void searchCandidates(int index) {
+        WnnWord word;
+        while (mConvResult.size() < PREDICT_LIMIT && index >= mConvResult.size()) {
+            if (isCancelled()) {
+                /* the candidates got so far are discarded */
+                break;
+            }
+            if ((word = getNextPrefixWord()) == null) {
+                break;
+            }
+            /* adjust the case of letter, and check duplication */
+            word.candidate = adjustCase(word.candidate);
+            if (!addCandidate(word)) {
+                mWordPool.recycle(word);
+            }
+        }
+    }
+
+    /**
+     * Adjust the case of a candidate to the input.
+     * <br>
+     * The adjusted strings are cached by the candidates from the dictionary,
+     * so that the same candidate is not adjusted again while typing.
+     *
+     * @param candidate		The candidate
+     * @return				The candidate whose case is adjusted
+     */
+    private String adjustCase(String candidate) {
+        if (mCandidateCase == CASE_LOWER) {
+            return candidate;
+        }
+        if (mCaseCacheType != mCandidateCase) {
+            mCaseCache.clear();
+            mCaseCacheType = mCandidateCase;
+        }
+        String adjusted = mCaseCache.get(candidate);
+        if (adjusted == null) {
+            adjusted = toCase(candidate, mCandidateCase);
+            if (mCaseCache.size() >= CASE_CACHE_SIZE) {
+                mCaseCache.clear();
+            }
+            mCaseCache.put(candidate, adjusted);
+        }
+        return adjusted;
+    }
+
+    /**
+     * Convert the case of a string.
+     *
+     * @param str		The string
+     * @param type		{@code CASE_HEAD_UPPER} or {@code CASE_UPPER}
+     * @return			The converted string; {@code str} itself if it is not changed.
+     */
+    private String toCase(String str, int type) {
+        int len = str.length();
+        int start = -1;
+        int end = (type == CASE_HEAD_UPPER) ? Math.min(len, 1) : len;
+        for (int i = 0; i < end; i++) {
+            if (Character.isLowerCase(str.charAt(i))) {
+                start = i;
+                break;
+            }
+        }
+        if (start < 0) {
+            return str;
+        }
+
+        char[] buf = mCaseBuffer;
+        if (buf.length < len) {
+            buf = mCaseBuffer = new char[len];
+        }
+        str.getChars(0, len, buf, 0);
+        for (int i = start; i < end; i++) {
+            buf[i] = Character.toUpperCase(buf[i]);
+        }
+        return new String(buf, 0, len);
+    }
+
+    /**
+     * Add a default candidate if there is no duplication.
+     *
+     * @param candidate		The candidate
+     */
+    private void addDefaultCandidate(String candidate) {
+        if (!mCandTable.containsKey(candidate)) {
+            WnnWord word = mWordPool.obtain();
+            word.candidate = candidate;
+            word.stroke = mSearchKey;
+            if (!addCandidate(word)) {
+                mWordPool.recycle(word);
+            }
+        }
+    }
+
+    /**
+     * Add the corrections of the input to the candidates.
+     */
+    private void addCorrections() {
+        for (int i = 0; i < mCorrectionCount; i++) {
+            String stroke = mCorrector.getWord(i);
+            addCandidate(new WnnWord(adjustCase(stroke), stroke, mCorrector.getScore(i)));
+        }
+    }
+
+    /**
+     * Re-rank the top candidates by the previous word.
+     * <br>
+     * The score of the learned bigram is added to the frequency of each
+     * candidate (the frequency of a correction includes the penalty of its cost),
+     * and the candidates are sorted stably.  This does not allocate any
+     * object.
+     */
+    private void rerankCandidates() {
+        ArrayList<WnnWord> result = mConvResult;
+        int[] scores = mScores;
+        int n = Math.min(result.size(), scores.length);
+        for (int i = 0; i < n; i++) {
+            WnnWord word = result.get(i);
+            int score = word.frequency + getBigramScore(word.stroke);
+
+            /* insertion sort (descending) */
+            int j = i;
+            while (j > 0 && scores[j - 1] < score) {
+                scores[j] = scores[j - 1];
+                result.set(j, result.get(j - 1));
+                j--;
+            }
+            scores[j] = score;
+            result.set(j, word);
+        }
+    }
+
+    /**
+     * Get the score of a word following the previous word.
+     * <br>
+     * The score of a learned pair decreases linearly with the rank of the
+     * word in the learning dictionary's links of the previous word, from
+     * {@code FREQ_LEARNED_BIGRAM} for the latest one.
+     *
+     * @param stroke	The stroke of the word
+     * @return			The score; 0 if the pair has not been learned.
+     */
+    private int getBigramScore(String stroke) {
+        Integer rank = mLearnedFollowerRank.get(stroke);
+        if (rank == null) {
+            return 0;
+        }
+        return FREQ_LEARNED_BIGRAM * (NEXT_WORD_LIMIT - rank.intValue()) / NEXT_WORD_LIMIT;
+    }
+
+    /**
+     * Make the next word candidates of the previous word.
+     * <br>
+     * The candidates are the words which have followed the previous word
+     * in the learning dictionary (the latest first).
+     *
+     * @return			1 if there are candidates; 0 if not.
+     */
+    private int predictNextWord() {
+        if (mPreviousWord == null) {
+            return 0;
+        }
+        mNextWordMode = true;
+        mInputString = "";
+        mSearchKey = "";
+
+        for (int i = 0; i < mLearnedFollowers.size() && mConvResult.size() < NEXT_WORD_LIMIT; i++) {
+            WnnWord word = mWordPool.obtain(mLearnedFollowers.get(i));
+            if (!addCandidate(word)) {
+                mWordPool.recycle(word);
+            }
+        }
+        return (mConvResult.size() > 0) ? 1 : 0;
+    }
+
+    /**
+     * Set the previous word for the next prediction.
+     * <br>
+     * The words which have followed it are taken from the learning
+     * dictionary by the link search.
+     *
+     * @param word		The word committed
+     */
+    private void setPreviousWord(WnnWord word) {
+        String key = word.candidate.toLowerCase();
+        mPreviousWord = new WnnWord(key, key);
+
+        mLearnedFollowers.clear();
+        mLearnedFollowerRank.clear();
+
+        WnnDictionary dict = mDictionary;
+        dict.setInUseState( true );
+        dict.clearDictionary();
+        dict.setDictionary(WnnDictionary.INDEX_LEARN_DICTIONARY, FREQ_LEARN, FREQ_LEARN);
+        dict.searchWord(WnnDictionary.SEARCH_LINK, WnnDictionary.ORDER_BY_FREQUENCY, "", mPreviousWord);
+        WnnWord follower;
+        while (mLearnedFollowers.size() < NEXT_WORD_LIMIT && (follower = dict.getNextWord()) != null) {
+            if (!mLearnedFollowerRank.containsKey(follower.stroke)) {
+                mLearnedFollowerRank.put(follower.stroke, Integer.valueOf(mLearnedFollowers.size()));
+                mLearnedFollowers.add(follower);
+            } else {
+                mWordPool.recycle(follower);
+            }
+        }
+        dict.setInUseState( false );
+    }
+
+    /**
+     * Whether the search is cancelled or not.
+     *
+     * @return			{@code true} if cancelled; {@code false} if otherwise.
+     */
+    private boolean isCancelled() {
+        return (mCancellation != null) && mCancellation.isCancelled();
+    }
+
+    /**
+     * Get the next word of the prefix search.
+     * <br>
+     * The word is taken from the completion table if the search key is in it;
+     * after the completions in the table run out, the rest are searched from
+     * the dictionaries (the words already taken are dropped as duplicates).
+     *
+     * @return			The word; {@code null} if there is no more word.
+     */
+    private WnnWord getNextPrefixWord() {
+        PrefixCompletionTable.Entry entry = mPrefixEntry;
+        if (entry != null) {
+            if (mPrefixIndex < entry.words.size()) {
+                return mWordPool.obtain(entry.words.get(mPrefixIndex++));
+            }
+            mPrefixEntry = null;
+            if (entry.complete) {
+                return null;
+            }
+            mDictionary.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY, mSearchKey);
+        }
+        return mDictionary.getNextWord();
+    }
+
     /**
      * Add a word to the candidates list if there is no duplication.
      * 
@@ -168,10 +494,21 @@ public class OpenWnnEngineEN implements WnnEngine {
     }
 
     private void clearCandidates() {
+        /* the words not returned as candidates are referred to by no one */
+        for (int i = mServedNum; i < mConvResult.size(); i++) {
+            mWordPool.recycle(mConvResult.get(i));
+        }
+        mServedNum = 0;
         mConvResult.clear();
         mCandTable.clear();
         mOutputNum = 0;
         mSearchKey = null;
+        mPrefixEntry = null;
+        mPrefixIndex = 0;
+        mNextWordMode = false;
+        mReranked = false;
+        mCorrectionCount = 0;
+        mDefaultCandidatesAdded = false;
     }
 
     /**
@@ -181,15 +518,53 @@ public class OpenWnnEngineEN implements WnnEngine {
      * @return			{@code true} if the dictionary is changed; {@code false} if not.
      */
     public boolean setDictionary(int type) {
-        if (type == DICT_FOR_CORRECT_MISTYPE) {
-            mDictionary.clearApproxPattern();
+        if (mDictType != type) {
+            /* the approximate pattern depends on the type */
+            mPrefixTable.clear();
+            mDictType = type;
+        }
+        mDictionary.clearApproxPattern();
+        mApproxFallback = false;
+        if (type == DICT_FOR_CORRECT_MISTYPE && mCorrector == null) {
+            startCorrectorCompiler();
+            /* substitute the neighboring keys until the spell corrector is compiled */
             mDictionary.setApproxPattern(WnnDictionary.APPROX_PATTERN_EN_QWERTY_NEAR);
-        } else {
-            mDictionary.clearApproxPattern();
+            mApproxFallback = true;
         }
         return true;
     }
 
+    /**
+     * Start compiling the spell corrector in the background.
+     * <br>
+     * The words are read from a dictionary instance of the compiling thread,
+     * so that the dictionary of this engine is never used by two threads.
+     * The corrector is published to {@code mCorrector} when it is compiled.
+     */
+    private void startCorrectorCompiler() {
+        if (mCorrectorCompiler != null) {
+            return;
+        }
+        mCorrectorCompiler = new Thread("OpenWnnSpellCompiler") {
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    OpenWnnDictionaryImpl dict = new OpenWnnDictionaryImpl(DICTIONARY_LIBRARY_PATH);
+                    dict.clearDictionary();
+                    dict.clearApproxPattern();
+                    dict.setDictionary(0, 400, 550);
+                    dict.setDictionary(1, 400, 550);
+                    dict.setDictionary(2, 400, 550);
+                    SpellCorrector corrector = new SpellCorrector();
+                    if (corrector.compile(dict, null)) {
+                        mCorrector = corrector;
+                    } else {
+                        Log.e("OpenWnn", "OpenWnnEngineEN: no word for the spell corrector");
+                    }
+                }
+            };
+        mCorrectorCompiler.start();
+    }
+
     /**
      * Set search key for the dictionary.
      * <br>
@@ -234,6 +609,18 @@ public class OpenWnnEngineEN implements WnnEngine {
     public void setFilter(CandidateFilter filter) {
     	mFilter = filter;
     }
+
+    /**
+     * Set the signal to stop the search.
+     * <br>
+     * The search of the candidates stops when it is cancelled, and the
+     * candidates got from it must be discarded.
+     *
+     * @param signal	The signal ({@code null} if not cancellable)
+     */
+    public void setCancellationSignal(CancellationSignal signal) {
+        mCancellation = signal;
+    }
     
     /***********************************************************************
      * WnnEngine's interface
@@ -252,7 +639,8 @@ public class OpenWnnEngineEN implements WnnEngine {
         
         String input = text.toString(2);
         if (!setSearchKey(input)) {
-            return 0;
+            /* predict the next word if the input is empty */
+            return predictNextWord();
         }
 
         /* set dictionaries by the length of input */
@@ -269,8 +657,31 @@ public class OpenWnnEngineEN implements WnnEngine {
         }
         dict.setDictionary(WnnDictionary.INDEX_USER_DICTIONARY, FREQ_USER, FREQ_USER);
         dict.setDictionary(WnnDictionary.INDEX_LEARN_DICTIONARY, FREQ_LEARN, FREQ_LEARN);
+
+        /* search the corrections of mistypes */
+        SpellCorrector corrector = mCorrector;
+        if (mDictType == DICT_FOR_CORRECT_MISTYPE && corrector != null) {
+            if (mApproxFallback) {
+                /* the spell corrector has been compiled since the dictionary was set */
+                dict.clearApproxPattern();
+                mPrefixTable.clear();
+                mApproxFallback = false;
+            }
+            if (mSearchKey.length() >= MIN_CORRECTION_LENGTH) {
+                mCorrectionCount = corrector.search(mSearchKey, CORRECTION_BUDGET_MS);
+            }
+        }
         
         /* search dictionaries */
+        if (PrefixCompletionTable.isTarget(mSearchKey)) {
+            mPrefixEntry = mPrefixTable.get(mSearchKey);
+            if (mPrefixEntry != null) {
+                return 1;
+            }
+            dict.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY, mSearchKey);
+            mPrefixEntry = mPrefixTable.build(mSearchKey, dict);
+            return 1;
+        }
         dict.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY, mSearchKey);
         return 1;
     }
@@ -305,9 +716,28 @@ public class OpenWnnEngineEN implements WnnEngine {
         return word;
     }
 
+    /** @see name.yxl.openwnn.WnnEngine#getCandidates */
+    public int getCandidates(int offset, int count, WnnWord[] out) {
+        if (mSearchKey == null) {
+            return 0;
+        }
+        int n = 0;
+        WnnWord word;
+        while (n < count && (word = getCandidate(offset + n)) != null) {
+            out[n++] = word;
+        }
+        mOutputNum = offset + n;
+        return n;
+    }
+
     /** @see name.yxl.openwnn.WnnEngine#learn */
     public boolean learn(WnnWord word) {
-        return ( mDictionary.learnWord(word) == 0 );
+        int ret = mDictionary.learnWord(word, mPreviousWord);
+        if (ret == 0) {
+            mPrefixTable.learn(word, FREQ_LEARN);
+        }
+        setPreviousWord(word);
+        return (ret == 0);
     }
 
     /** @see name.yxl.openwnn.WnnEngine#addWord */
@@ -316,6 +746,7 @@ public class OpenWnnEngineEN implements WnnEngine {
         dict.setInUseState( true );
         dict.addWordToUserDictionary(word);
         dict.setInUseState( false );
+        mPrefixTable.clear();
         return 0;
     }
 
@@ -325,6 +756,7 @@ public class OpenWnnEngineEN implements WnnEngine {
         dict.setInUseState( true );
         dict.removeWordFromUserDictionary(word);
         dict.setInUseState( false );
+        mPrefixTable.clear();
         return false;
     }
 
@@ -332,7 +764,11 @@ public class OpenWnnEngineEN implements WnnEngine {
     public void setPreferences(SharedPreferences pref) {}
 
     /** @see name.yxl.openwnn.WnnEngine#breakSequence */
-    public void breakSequence()  {}
+    public void breakSequence()  {
+        mPreviousWord = null;
+        mLearnedFollowers.clear();
+        mLearnedFollowerRank.clear();
+    }
 
     /** @see name.yxl.openwnn.WnnEngine#makeCandidateListOf */
     public int makeCandidateListOf(int clausePosition)  {return 0;}
@@ -340,12 +776,14 @@ public class OpenWnnEngineEN implements WnnEngine {
     /** @see name.yxl.openwnn.WnnEngine#initializeDictionary */
     public boolean initializeDictionary(int dictionary)  {
         WnnDictionary dict = mDictionary;
+        mPrefixTable.clear();
 
         switch( dictionary ) {
         case WnnEngine.DICTIONARY_TYPE_LEARN:
             dict.setInUseState( true );
             dict.clearLearnDictionary();
             dict.setInUseState( false );
+            breakSequence();
             return true;
 
         case WnnEngine.DICTIONARY_TYPE_USER:
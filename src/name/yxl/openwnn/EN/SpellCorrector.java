@@ -0,0 +1,547 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn.EN;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import name.yxl.openwnn.WnnDictionary;
+import name.yxl.openwnn.WnnWord;
+import name.yxl.openwnn.WnnWordPool;
+
+/**
+ * The spell corrector for English IME.
+ * <br>
+ * This class searches the trie of the dictionary readings for the
+ * prefixes within a weighted edit distance (substitution, insertion,
+ * deletion and transposition) of the input, and gives the most frequent
+ * word of each prefix found.  A substitution with a neighboring key on
+ * the QWERTY keyboard costs less than the others.  The search walks the
+ * trie with a row of the distance table for each depth, prunes the
+ * subtrees which cannot be within the distance, and stops when the time
+ * budget runs out.
+ * <p>
+ * The trie is compiled from the words of the dictionaries by
+ * {@link #compile(WnnDictionary, WnnWordPool)}.  The nodes are numbered in breadth
+ * first order, so that the children of a node are consecutive and the
+ * trie is held in a few flat arrays.
+ * </p>
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class SpellCorrector {
+    /** Maximum number of corrections */
+    public static final int MAX_CORRECTIONS = 8;
+
+    /** Maximum length of the input and the words */
+    private static final int MAX_LENGTH = 32;
+
+    /** The first character of the readings (used to enumerate the dictionary) */
+    private static final char READING_FIRST = 'a';
+    /** The last character of the readings (used to enumerate the dictionary) */
+    private static final char READING_LAST  = 'z';
+
+    /** Initial capacity of the nodes while compiling */
+    private static final int INITIAL_NODES = 4096;
+
+    /** Cost of a substitution with a neighboring key */
+    private static final int COST_NEAR = 2;
+    /** Cost of a substitution with another key */
+    private static final int COST_FAR = 4;
+    /** Cost of a transposition */
+    private static final int COST_TRANSPOSE = 2;
+    /** Cost of an insertion or a deletion */
+    private static final int COST_GAP = 3;
+
+    /** Maximum cost for a short input */
+    private static final int MAX_COST_SHORT = 2;
+    /** Maximum cost for a long input */
+    private static final int MAX_COST_LONG = 4;
+    /** Length of the input regarded as long */
+    private static final int LONG_INPUT = 4;
+
+    /** Penalty of the frequency for a unit of the cost */
+    public static final int PENALTY_PER_COST = 30;
+
+    /** Number of nodes visited between the checks of the time budget */
+    private static final int CHECK_INTERVAL = 128;
+
+    /** Key rows of the QWERTY keyboard */
+    private static final String[] QWERTY_ROWS = {"qwertyuiop", "asdfghjkl", "zxcvbnm"};
+    /** Offset of each key row (in quarter keys) */
+    private static final int[] QWERTY_OFFSET = {0, 1, 3};
+    /** Maximum square distance of neighboring keys (in quarter keys) */
+    private static final int NEAR_DISTANCE2 = 5 * 5;
+    /** Whether two keys are neighboring or not ([a-z][a-z]) */
+    private static final boolean[][] NEAR_KEY = new boolean[26][26];
+
+    static {
+        int[] x = new int[26];
+        int[] y = new int[26];
+        for (int r = 0; r < QWERTY_ROWS.length; r++) {
+            String row = QWERTY_ROWS[r];
+            for (int c = 0; c < row.length(); c++) {
+                int k = row.charAt(c) - 'a';
+                x[k] = c * 4 + QWERTY_OFFSET[r];
+                y[k] = r * 4;
+            }
+        }
+        for (int i = 0; i < 26; i++) {
+            for (int j = 0; j < 26; j++) {
+                int dx = x[i] - x[j];
+                int dy = y[i] - y[j];
+                NEAR_KEY[i][j] = (dx * dx + dy * dy <= NEAR_DISTANCE2);
+            }
+        }
+    }
+
+    /** Number of the nodes (0 if not compiled; the node 0 is the root) */
+    private int mNodeCount;
+    /** First child of each node (the children of the node i are from first[i] to first[i+1]-1) */
+    private int[] mFirst;
+    /** Parent of each node (-1 for the root) */
+    private int[] mParent;
+    /** The node of the most frequent word in the subtree of each node */
+    private int[] mBest;
+    /** Frequency of the most frequent word in the subtree of each node */
+    private short[] mFrequency;
+    /** Label of each node (lower case) */
+    private char[] mLabel;
+
+    /** Labels of the nodes while compiling */
+    private char[] mBuildLabel;
+    /** First child of the nodes while compiling (-1 if none) */
+    private int[] mBuildChild;
+    /** Next sibling of the nodes while compiling (-1 if none) */
+    private int[] mBuildSibling;
+    /** Frequency of the word of the nodes while compiling (-1 if no word ends there) */
+    private int[] mBuildFrequency;
+    /** Number of the nodes while compiling */
+    private int mBuildCount;
+
+    /** The input (work area) */
+    private char[] mInput = new char[MAX_LENGTH];
+    /** Length of the input */
+    private int mInputLength;
+    /** Maximum cost of the current search */
+    private int mMaxCost;
+    /** Rows of the distance table for each depth (work area) */
+    private int[][] mRows = new int[MAX_LENGTH + 1][MAX_LENGTH + 1];
+    /** Labels of the current path (work area) */
+    private char[] mPath = new char[MAX_LENGTH + 1];
+    /** Deadline of the current search */
+    private long mDeadline;
+    /** Number of the visited nodes */
+    private int mVisited;
+    /** Whether the current search is aborted by the time budget or not */
+    private boolean mAborted;
+
+    /** Number of the corrections found */
+    private int mCount;
+    /** Nodes of the words corrected */
+    private int[] mResultNode = new int[MAX_CORRECTIONS];
+    /** Scores of the corrections (descending) */
+    private int[] mResultScore = new int[MAX_CORRECTIONS];
+
+    /**
+     * Constructor
+     */
+    public SpellCorrector() {
+        mNodeCount = 0;
+    }
+
+    /**
+     * Whether the trie is compiled or not.
+     *
+     * @return      {@code true} if compiled; {@code false} if not.
+     */
+    public boolean isCompiled() {
+        return mNodeCount > 0;
+    }
+
+    /**
+     * Get the number of the nodes of the trie.
+     *
+     * @return      The number of the nodes
+     */
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    /**
+     * Compile the words of the dictionaries into the trie.
+     * <br>
+     * The words are enumerated by prefix searching with every letter
+     * from the dictionaries set to {@code dict}, and the frequency of each
+     * word is taken as the dictionary gives it.  The approximate pattern
+     * must be cleared beforehand.
+     *
+     * @param dict      The dictionary
+     * @param pool      The pool which the words are recycled to ({@code null} if not used)
+     * @return          {@code true} if any word is compiled; {@code false} if not.
+     */
+    public boolean compile(WnnDictionary dict, WnnWordPool pool) {
+        long start = SystemClock.uptimeMillis();
+        mNodeCount = 0;
+        mBuildLabel     = new char[INITIAL_NODES];
+        mBuildChild     = new int[INITIAL_NODES];
+        mBuildSibling   = new int[INITIAL_NODES];
+        mBuildFrequency = new int[INITIAL_NODES];
+        mBuildCount = 0;
+        newNode('\0');
+
+        int count = 0;
+        for (char ch = READING_FIRST; ch <= READING_LAST; ch++) {
+            String key = String.valueOf(ch);
+            if (dict.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY, key) <= 0) {
+                continue;
+            }
+            WnnWord word;
+            while ((word = dict.getNextWord()) != null) {
+                if (word.stroke != null && addWord(word.stroke, word.frequency)) {
+                    count++;
+                }
+                if (pool != null) {
+                    pool.recycle(word);
+                }
+            }
+        }
+        if (count > 0) {
+            layout();
+        }
+        mBuildLabel = null;
+        mBuildChild = null;
+        mBuildSibling = null;
+        mBuildFrequency = null;
+
+        if (Log.isLoggable("OpenWnn", Log.DEBUG)) {
+            Log.d("OpenWnn", "SpellCorrector: compiled words=" + count + " nodes=" + mNodeCount
+                  + " time=" + (SystemClock.uptimeMillis() - start));
+        }
+        return isCompiled();
+    }
+
+    /**
+     * Add a word to the trie being compiled.
+     *
+     * @param stroke        The reading of the word
+     * @param frequency     The frequency of the word
+     * @return              {@code true} if added; {@code false} if the reading is too long.
+     */
+    private boolean addWord(String stroke, int frequency) {
+        int len = stroke.length();
+        if (len == 0 || len > MAX_LENGTH) {
+            return false;
+        }
+        int node = 0;
+        for (int i = 0; i < len; i++) {
+            char c = Character.toLowerCase(stroke.charAt(i));
+            int child = mBuildChild[node];
+            while (child >= 0 && mBuildLabel[child] != c) {
+                child = mBuildSibling[child];
+            }
+            if (child < 0) {
+                child = newNode(c);
+                mBuildSibling[child] = mBuildChild[node];
+                mBuildChild[node] = child;
+            }
+            node = child;
+        }
+        if (mBuildFrequency[node] < frequency) {
+            mBuildFrequency[node] = frequency;
+        }
+        return true;
+    }
+
+    /**
+     * Make a node of the trie being compiled.
+     *
+     * @param label     The label of the node
+     * @return          The node
+     */
+    private int newNode(char label) {
+        int n = mBuildCount++;
+        if (n >= mBuildLabel.length) {
+            int size = mBuildLabel.length * 2;
+            char[] labels = new char[size];
+            System.arraycopy(mBuildLabel, 0, labels, 0, n);
+            mBuildLabel = labels;
+            int[] children = new int[size];
+            System.arraycopy(mBuildChild, 0, children, 0, n);
+            mBuildChild = children;
+            int[] siblings = new int[size];
+            System.arraycopy(mBuildSibling, 0, siblings, 0, n);
+            mBuildSibling = siblings;
+            int[] frequencies = new int[size];
+            System.arraycopy(mBuildFrequency, 0, frequencies, 0, n);
+            mBuildFrequency = frequencies;
+        }
+        mBuildLabel[n] = label;
+        mBuildChild[n] = -1;
+        mBuildSibling[n] = -1;
+        mBuildFrequency[n] = -1;
+        return n;
+    }
+
+    /**
+     * Lay out the compiled trie in breadth first order.
+     * <br>
+     * The most frequent word of each subtree is propagated from the
+     * leaves to the root.
+     */
+    private void layout() {
+        int n = mBuildCount;
+        int[] order = new int[n];
+        int[] first = new int[n + 1];
+        int[] parent = new int[n];
+        int[] best = new int[n];
+        short[] frequency = new short[n];
+        char[] label = new char[n];
+
+        order[0] = 0;
+        parent[0] = -1;
+        int tail = 1;
+        for (int i = 0; i < n; i++) {
+            int b = order[i];
+            first[i] = tail;
+            for (int child = mBuildChild[b]; child >= 0; child = mBuildSibling[child]) {
+                order[tail] = child;
+                parent[tail] = i;
+                tail++;
+            }
+            label[i] = mBuildLabel[b];
+            int f = mBuildFrequency[b];
+            best[i] = (f >= 0) ? i : -1;
+            frequency[i] = (short) Math.max(Math.min(f, Short.MAX_VALUE), Short.MIN_VALUE);
+        }
+        first[n] = n;
+
+        /* the children have larger numbers than their parents */
+        for (int i = n - 1; i > 0; i--) {
+            int p = parent[i];
+            if (best[i] >= 0 && (best[p] < 0 || frequency[p] < frequency[i])) {
+                best[p] = best[i];
+                frequency[p] = frequency[i];
+            }
+        }
+
+        mFirst = first;
+        mParent = parent;
+        mBest = best;
+        mFrequency = frequency;
+        mLabel = label;
+        mNodeCount = n;
+    }
+
+    /**
+     * Search the corrections of the input.
+     * <br>
+     * The prefixes which match the input exactly are not included, because
+     * they are found by the dictionary search.
+     *
+     * @param input     The input (lower case)
+     * @param budget    The time budget(msec.)
+     * @return          The number of the corrections found
+     */
+    public int search(String input, int budget) {
+        mCount = 0;
+        int len = input.length();
+        if (len == 0 || len > MAX_LENGTH) {
+            return 0;
+        }
+        input.getChars(0, len, mInput, 0);
+        mInputLength = len;
+        mMaxCost = (len < LONG_INPUT) ? MAX_COST_SHORT : MAX_COST_LONG;
+        long start = SystemClock.uptimeMillis();
+        mDeadline = start + budget;
+        mVisited = 0;
+        mAborted = false;
+
+        int[] row = mRows[0];
+        for (int j = 0; j <= len; j++) {
+            row[j] = j * COST_GAP;
+        }
+        searchChildren(0, 0);
+
+        if (Log.isLoggable("OpenWnn", Log.DEBUG)) {
+            Log.d("OpenWnn", "SpellCorrector: corrections=" + mCount
+                  + " visited=" + mVisited + " time=" + (SystemClock.uptimeMillis() - start)
+                  + (mAborted ? " (aborted)" : ""));
+        }
+        return mCount;
+    }
+
+    /**
+     * Get the word of a correction.
+     *
+     * @param index     The index of the correction
+     * @return          The word
+     */
+    public String getWord(int index) {
+        int node = mResultNode[index];
+        int depth = 0;
+        for (int n = node; n > 0; n = mParent[n]) {
+            depth++;
+        }
+        char[] chars = new char[depth];
+        for (int n = node; n > 0; n = mParent[n]) {
+            chars[--depth] = mLabel[n];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Get the score of a correction.
+     *
+     * @param index     The index of the correction
+     * @return          The frequency of the word minus the penalty of the cost
+     */
+    public int getScore(int index) {
+        return mResultScore[index];
+    }
+
+    /**
+     * Search the children of a node.
+     *
+     * @param node      The node
+     * @param depth     The depth of the node
+     */
+    private void searchChildren(int node, int depth) {
+        if (depth >= MAX_LENGTH) {
+            return;
+        }
+        int start = mFirst[node];
+        int end = mFirst[node + 1];
+        for (int child = start; child < end && !mAborted; child++) {
+            if (++mVisited % CHECK_INTERVAL == 0 && SystemClock.uptimeMillis() > mDeadline) {
+                mAborted = true;
+                break;
+            }
+            char c = mLabel[child];
+            if (fillRow(c, depth + 1) > mMaxCost) {
+                /* no prefix in the subtree can be within the distance */
+                continue;
+            }
+            int cost = mRows[depth + 1][mInputLength];
+            if (cost == 0) {
+                /* the words in the subtree are found by the dictionary search */
+                continue;
+            }
+            if (cost <= mMaxCost) {
+                addResult(child, cost);
+            }
+            searchChildren(child, depth + 1);
+        }
+    }
+
+    /**
+     * Fill the row of the distance table for a node.
+     *
+     * @param c         The label of the node
+     * @param depth     The depth of the node
+     * @return          The minimum cost in the row
+     */
+    private int fillRow(char c, int depth) {
+        int len = mInputLength;
+        char[] input = mInput;
+        int[] prev = mRows[depth - 1];
+        int[] row = mRows[depth];
+        mPath[depth] = c;
+
+        row[0] = depth * COST_GAP;
+        int min = row[0];
+        for (int j = 1; j <= len; j++) {
+            char in = input[j - 1];
+            int cost = prev[j - 1] + ((c == in) ? 0 : substitutionCost(c, in));
+            cost = Math.min(cost, prev[j] + COST_GAP);
+            cost = Math.min(cost, row[j - 1] + COST_GAP);
+            if (depth > 1 && j > 1 && c == input[j - 2] && mPath[depth - 1] == in) {
+                cost = Math.min(cost, mRows[depth - 2][j - 2] + COST_TRANSPOSE);
+            }
+            row[j] = cost;
+            if (cost < min) {
+                min = cost;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Get the cost of substituting a character.
+     *
+     * @param a     The character in the dictionary
+     * @param b     The character in the input
+     * @return      The cost
+     */
+    private static int substitutionCost(char a, char b) {
+        if ('a' <= a && a <= 'z' && 'a' <= b && b <= 'z' && NEAR_KEY[a - 'a'][b - 'a']) {
+            return COST_NEAR;
+        }
+        return COST_FAR;
+    }
+
+    /**
+     * Add a correction to the results.
+     *
+     * @param node      The node of the corrected prefix
+     * @param cost      The cost of the correction
+     */
+    private void addResult(int node, int cost) {
+        int best = mBest[node];
+        int score = mFrequency[node] - cost * PENALTY_PER_COST;
+
+        /* the same word may be found from another prefix */
+        for (int i = 0; i < mCount; i++) {
+            if (mResultNode[i] == best) {
+                if (mResultScore[i] >= score) {
+                    return;
+                }
+                removeResult(i);
+                break;
+            }
+        }
+        if (mCount == MAX_CORRECTIONS) {
+            if (mResultScore[mCount - 1] >= score) {
+                return;
+            }
+            mCount--;
+        }
+
+        /* insert into the sorted results */
+        int j = mCount++;
+        while (j > 0 && mResultScore[j - 1] < score) {
+            mResultNode[j] = mResultNode[j - 1];
+            mResultScore[j] = mResultScore[j - 1];
+            j--;
+        }
+        mResultNode[j] = best;
+        mResultScore[j] = score;
+    }
+
+    /**
+     * Remove a correction from the results.
+     *
+     * @param index     The index of the correction
+     */
+    private void removeResult(int index) {
+        for (int i = index + 1; i < mCount; i++) {
+            mResultNode[i - 1] = mResultNode[i];
+            mResultScore[i - 1] = mResultScore[i];
+        }
+        mCount--;
+    }
+}
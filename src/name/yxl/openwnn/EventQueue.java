@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * The queue of the events applied on the UI thread.
+ * <br>
+ * Any thread can post {@link OpenWnnEvent}s and tasks (the completions
+ * of background work) without a lock, and the UI thread applies them
+ * one by one in the order of posting.  So the state of the IME is
+ * changed only by the UI thread, and the UI thread never waits for a
+ * monitor held by another thread.
+ * <p>
+ * The queue is a linked list which the producers append to by an atomic
+ * swap of the last node; only the UI thread removes the nodes.  The UI
+ * thread is woken by a message to its {@link Handler} when the queue
+ * becomes non-empty.
+ * </p>
+ * The average time from posting to applying is tracked, and each
+ * latency is logged if the debug log of "OpenWnn" is enabled.
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class EventQueue {
+    /** Weight of the latest sample of the moving average (1/2^n) */
+    private static final int AVERAGE_SHIFT = 3;
+
+    /**
+     * A node of the queue.
+     */
+    private static class Node {
+        /** The event (or {@code null}) */
+        OpenWnnEvent event;
+        /** The task (or {@code null}) */
+        Runnable task;
+        /** The time(nsec.) of posting */
+        long time;
+        /** The next node */
+        volatile Node next;
+    }
+
+    /** The IME which the events are applied to */
+    private final OpenWnn mWnn;
+
+    /** The last node (appended by the producers) */
+    private final AtomicReference<Node> mHead;
+    /** The node before the first one (removed by the UI thread) */
+    private Node mTail;
+
+    /** Whether a message to drain the queue is posted */
+    private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+    /** Whether the UI thread is draining the queue */
+    private boolean mDraining = false;
+
+    /** {@code Handler} of the UI thread */
+    private final Handler mMain = new Handler(Looper.getMainLooper());
+    /** The task to drain the queue */
+    private final Runnable mDrainTask = new Runnable() {
+            public void run() {
+                drain();
+            }
+        };
+
+    /** Moving average of the latency (usec. * 2^AVERAGE_SHIFT) */
+    private long mLatency = 0;
+
+    /**
+     * Constructor
+     *
+     * @param wnn   The IME which the events are applied to
+     */
+    public EventQueue(OpenWnn wnn) {
+        mWnn = wnn;
+        mTail = new Node();
+        mHead = new AtomicReference<Node>(mTail);
+    }
+
+    /**
+     * Whether the current thread is the UI thread or not.
+     *
+     * @return      {@code true} if the UI thread; {@code false} if otherwise.
+     */
+    public boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    /**
+     * Post an event.
+     * <br>
+     * This method can be called on any thread.  The event must not be
+     * modified after posting.
+     *
+     * @param ev    The event
+     */
+    public void post(OpenWnnEvent ev) {
+        Node node = new Node();
+        node.event = ev;
+        enqueue(node);
+    }
+
+    /**
+     * Post a task.
+     * <br>
+     * This method can be called on any thread.  The task is run on the
+     * UI thread in order with the events.
+     *
+     * @param task  The task
+     */
+    public void post(Runnable task) {
+        Node node = new Node();
+        node.task = task;
+        enqueue(node);
+    }
+
+    /**
+     * Apply the posted events and tasks.
+     * <br>
+     * This method must be called on the UI thread.  It does nothing if
+     * called from an event or a task being applied by this method.
+     */
+    public void drain() {
+        if (mDraining) {
+            return;
+        }
+        mDraining = true;
+        /* clear the flag first; a producer appending from now on posts another message */
+        mScheduled.set(false);
+        try {
+            Node node;
+            while ((node = poll()) != null) {
+                OpenWnnEvent ev = node.event;
+                Runnable task = node.task;
+                node.event = null;
+                node.task = null;
+                onApply(node.time);
+                if (ev != null) {
+                    mWnn.dispatchEvent(ev);
+                } else {
+                    task.run();
+                }
+            }
+        } finally {
+            mDraining = false;
+        }
+    }
+
+    /**
+     * Get the average latency from posting to applying.
+     *
+     * @return      The average latency(usec.)
+     */
+    public long getLatency() {
+        return mLatency >> AVERAGE_SHIFT;
+    }
+
+    /**
+     * Append a node and wake the UI thread.
+     *
+     * @param node  The node
+     */
+    private void enqueue(Node node) {
+        node.time = System.nanoTime();
+        Node prev = mHead.getAndSet(node);
+        prev.next = node;
+        if (mScheduled.compareAndSet(false, true)) {
+            mMain.post(mDrainTask);
+        }
+    }
+
+    /**
+     * Remove the first node.
+     * <br>
+     * A node being appended may not be linked yet; it is removed on the
+     * next drain, which its producer posts after linking it.
+     *
+     * @return      The node; {@code null} if no node is linked.
+     */
+    private Node poll() {
+        Node next = mTail.next;
+        if (next == null) {
+            return null;
+        }
+        /* the removed node becomes the node before the first one */
+        mTail = next;
+        return next;
+    }
+
+    /**
+     * Record the latency of a node being applied.
+     *
+     * @param time  The time(nsec.) of posting
+     */
+    private void onApply(long time) {
+        long latency = (System.nanoTime() - time) / 1000;
+        mLatency += latency - (mLatency >> AVERAGE_SHIFT);
+        if (Log.isLoggable("OpenWnn", Log.DEBUG)) {
+            Log.d("OpenWnn", "EventQueue: latency=" + latency + "us (average=" + getLatency() + "us)");
+        }
+    }
+}
@@ -0,0 +1,554 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn.JAJP;
+
+import java.util.HashSet;
+
+import name.yxl.openwnn.WnnDictionary;
+import name.yxl.openwnn.WnnWord;
+
+import android.util.Log;
+
+/**
+ * The automaton of ancillary words (Fuzokugo) for Japanese IME.
+ * <br>
+ * The readings of all ancillary words are stored in reverse order as a trie,
+ * and each state which terminates a word holds the part-of-speech pairs of the words.
+ * {@link #scan(String, byte[][])} finds every sequence of ancillary words which
+ * matches a suffix of the input by scanning it only once from right to left.
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class AncillaryWordAutomaton {
+    /** Index of the dictionary which contains ancillary words */
+    public static final int DICTIONARY_INDEX = 6;
+
+    /** The first character of the readings (used to enumerate the dictionary) */
+    private static final char READING_FIRST = '\u3041';
+    /** The last character of the readings (used to enumerate the dictionary) */
+    private static final char READING_LAST  = '\u3094';
+    /** Prolonged sound mark */
+    private static final char READING_CHOON = '\u30fc';
+
+    /** Initial capacity of the states */
+    private static final int INITIAL_STATES = 256;
+    /** Initial capacity of the matched patterns */
+    private static final int INITIAL_PATTERNS = 128;
+
+    /** The root state */
+    private static final int ROOT = 0;
+
+    /** Labels of the transitions from each state (sorted) */
+    private char[][] mLabels;
+    /** Destinations of the transitions from each state */
+    private int[][] mNext;
+    /** Number of the transitions from each state */
+    private int[] mNextCount;
+    /** Left part of speech of the words terminated at each state */
+    private int[][] mPosLeft;
+    /** Right part of speech of the words terminated at each state */
+    private int[][] mPosRight;
+    /** Number of the words terminated at each state */
+    private int[] mPosCount;
+    /** Number of the states */
+    private int mStateCount;
+    /** Maximum length of the readings */
+    private int mMaxLength;
+
+    /** Whether all ancillary words were compiled from the dictionary */
+    private boolean mComplete;
+    /** Whether the words starting with each character were compiled ([READING_FIRST..READING_LAST, READING_CHOON]) */
+    private boolean[] mCompiled = new boolean[READING_LAST - READING_FIRST + 2];
+    /** Readings searched on demand (used for the characters not compiled) */
+    private HashSet<String> mSearchedReadings;
+
+    /** Head of the matched patterns at each split point */
+    private int[] mPatternHead = new int[OpenWnnClauseConverterJAJP.MAX_INPUT_LENGTH + 1];
+    /** Next matched pattern at the same split point */
+    private int[] mPatternNext  = new int[INITIAL_PATTERNS];
+    /** Left part of speech of the matched patterns */
+    private int[] mPatternLeft  = new int[INITIAL_PATTERNS];
+    /** Right part of speech of the matched patterns */
+    private int[] mPatternRight = new int[INITIAL_PATTERNS];
+    /** Number of the matched patterns */
+    private int mPatternCount;
+
+    /**
+     * Constructor
+     */
+    public AncillaryWordAutomaton() {
+        mSearchedReadings = new HashSet<String>();
+        clear();
+    }
+
+    /**
+     * Clear the automaton.
+     */
+    public void clear() {
+        mLabels    = new char[INITIAL_STATES][];
+        mNext      = new int[INITIAL_STATES][];
+        mNextCount = new int[INITIAL_STATES];
+        mPosLeft   = new int[INITIAL_STATES][];
+        mPosRight  = new int[INITIAL_STATES][];
+        mPosCount  = new int[INITIAL_STATES];
+        mStateCount = 1;
+        mMaxLength = 0;
+        mComplete = false;
+        for (int i = 0; i < mCompiled.length; i++) {
+            mCompiled[i] = false;
+        }
+        mSearchedReadings.clear();
+        mPatternCount = 0;
+    }
+
+    /**
+     * Compile all ancillary words in the dictionary.
+     * <br>
+     * The ancillary words are enumerated by prefix searching with every
+     * Hiragana character.  The automaton is complete only if every
+     * enumeration succeeded; the readings which start with a character
+     * not enumerated are searched on demand by {@link #prepare(WnnDictionary, String)}.
+     *
+     * @param dict      The dictionary
+     * @return          {@code true} if all words are compiled; {@code false} if not.
+     */
+    public boolean compile(WnnDictionary dict) {
+        clear();
+
+        dict.clearDictionary();
+        dict.clearApproxPattern();
+        dict.setDictionary(DICTIONARY_INDEX, 400, 500);
+
+        int count = 0;
+        int failed = 0;
+        for (char ch = READING_FIRST; ch <= READING_LAST; ch++) {
+            int n = compileWords(dict, ch);
+            if (n < 0) {
+                failed++;
+            } else {
+                count += n;
+            }
+        }
+        int n = compileWords(dict, READING_CHOON);
+        if (n < 0) {
+            failed++;
+        } else {
+            count += n;
+        }
+
+        /* no word at all means that the dictionary cannot be enumerated */
+        mComplete = (failed == 0 && count > 0);
+        if (!mComplete) {
+            Log.e("OpenWnn", "AncillaryWordAutomaton: enumeration failed for " + failed
+                  + " characters (" + count + " words compiled)");
+            if (count == 0) {
+                for (int i = 0; i < mCompiled.length; i++) {
+                    mCompiled[i] = false;
+                }
+            }
+        }
+        return mComplete;
+    }
+
+    /**
+     * Compile the ancillary words which start with the character.
+     *
+     * @param dict      The dictionary
+     * @param ch        The first character of the readings
+     * @return          The number of the compiled words; -1 if the enumeration failed.
+     */
+    private int compileWords(WnnDictionary dict, char ch) {
+        String key = String.valueOf(ch);
+        int ret = dict.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY, key);
+        if (ret < 0) {
+            return -1;
+        }
+        int count = 0;
+        if (ret > 0) {
+            WnnWord word;
+            while ((word = dict.getNextWord()) != null) {
+                if (word.stroke == null || !word.stroke.startsWith(key)) {
+                    /* the dictionary does not support prefix searching */
+                    return -1;
+                }
+                addWord(word.stroke, word.partOfSpeech.left, word.partOfSpeech.right);
+                count++;
+            }
+            if (count == 0) {
+                /* found but not enumerated */
+                return -1;
+            }
+        }
+        mCompiled[compiledIndex(ch)] = true;
+        return count;
+    }
+
+    /**
+     * Get the index of {@code mCompiled} for the character.
+     *
+     * @param ch        The first character of the readings
+     * @return          The index; -1 if the character is never enumerated.
+     */
+    private static int compiledIndex(char ch) {
+        if (ch >= READING_FIRST && ch <= READING_LAST) {
+            return ch - READING_FIRST;
+        } else if (ch == READING_CHOON) {
+            return READING_LAST - READING_FIRST + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Prepare the automaton for scanning the input.
+     * <br>
+     * This method does nothing if all ancillary words are compiled.
+     * Otherwise, every substring of the input which starts with a character
+     * not compiled and has not been searched yet is searched from the
+     * dictionary and added to the automaton.
+     *
+     * @param dict      The dictionary
+     * @param input     The input string
+     */
+    public void prepare(WnnDictionary dict, String input) {
+        if (mComplete) {
+            return;
+        }
+
+        boolean set = false;
+        int len = input.length();
+        for (int start = 0; start < len; start++) {
+            int index = compiledIndex(input.charAt(start));
+            if (index >= 0 && mCompiled[index]) {
+                continue;
+            }
+            for (int end = start + 1; end <= len; end++) {
+                String key = input.substring(start, end);
+                if (!mSearchedReadings.add(key)) {
+                    continue;
+                }
+                if (!set) {
+                    dict.clearDictionary();
+                    dict.clearApproxPattern();
+                    dict.setDictionary(DICTIONARY_INDEX, 400, 500);
+                    set = true;
+                }
+                dict.searchWord(WnnDictionary.SEARCH_EXACT, WnnDictionary.ORDER_BY_FREQUENCY, key);
+                WnnWord word;
+                while ((word = dict.getNextWord()) != null) {
+                    addWord(key, word.partOfSpeech.left, word.partOfSpeech.right);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add an ancillary word.
+     *
+     * @param stroke    The reading of the word
+     * @param left      The left part of speech of the word
+     * @param right     The right part of speech of the word
+     */
+    public void addWord(String stroke, int left, int right) {
+        int len = stroke.length();
+        if (len == 0) {
+            return;
+        }
+
+        int state = ROOT;
+        for (int i = len - 1; i >= 0; i--) {
+            int next = findNext(state, stroke.charAt(i));
+            if (next < 0) {
+                next = addNext(state, stroke.charAt(i));
+            }
+            state = next;
+        }
+
+        /* ignore the same part of speech */
+        int[] posLeft = mPosLeft[state];
+        int[] posRight = mPosRight[state];
+        int count = mPosCount[state];
+        for (int i = 0; i < count; i++) {
+            if (posLeft[i] == left && posRight[i] == right) {
+                return;
+            }
+        }
+        if (posLeft == null) {
+            posLeft  = mPosLeft[state]  = new int[2];
+            posRight = mPosRight[state] = new int[2];
+        } else if (count == posLeft.length) {
+            posLeft  = mPosLeft[state]  = grow(posLeft, count * 2);
+            posRight = mPosRight[state] = grow(posRight, count * 2);
+        }
+        posLeft[count] = left;
+        posRight[count] = right;
+        mPosCount[state] = count + 1;
+
+        if (mMaxLength < len) {
+            mMaxLength = len;
+        }
+    }
+
+    /**
+     * Get the number of the states.
+     *
+     * @return      The number of the states
+     */
+    public int getStateCount() {
+        return mStateCount;
+    }
+
+    /**
+     * Scan the input and find the ancillary patterns at all split points.
+     * <br>
+     * An ancillary pattern is a sequence of ancillary words which are connectable
+     * each other and matches {@code input.substring(split)}.  The patterns are
+     * represented by the left part of speech of the first word and the right part
+     * of speech of the last word.  Use {@link #getFirstPattern(int)} and
+     * {@link #getNextPattern(int)} to get the result.
+     *
+     * @param input             The input string
+     * @param connectMatrix     The connect matrix
+     */
+    public void scan(String input, byte[][] connectMatrix) {
+        int len = input.length();
+        if (mPatternHead.length <= len) {
+            mPatternHead = new int[len + 1];
+        }
+        for (int i = 0; i <= len; i++) {
+            mPatternHead[i] = -1;
+        }
+        mPatternCount = 0;
+
+        /* push the patterns from the end of the input to the left */
+        for (int end = len; end > 0; end--) {
+            if (end != len && mPatternHead[end] < 0) {
+                continue;
+            }
+
+            int state = ROOT;
+            int limit = (end > mMaxLength) ? end - mMaxLength : 0;
+            for (int start = end - 1; start >= limit; start--) {
+                state = findNext(state, input.charAt(start));
+                if (state < 0) {
+                    break;
+                }
+
+                int count = mPosCount[state];
+                if (count == 0) {
+                    continue;
+                }
+                int[] posLeft = mPosLeft[state];
+                int[] posRight = mPosRight[state];
+                for (int i = 0; i < count; i++) {
+                    if (end == len) {
+                        addPattern(start, posLeft[i], posRight[i]);
+                    } else {
+                        for (int p = mPatternHead[end]; p >= 0; p = mPatternNext[p]) {
+                            if (connectible(connectMatrix, posRight[i], mPatternLeft[p])) {
+                                addPattern(start, posLeft[i], mPatternRight[p]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the first ancillary pattern at the split point.
+     *
+     * @param split     The split point of the input
+     * @return          The index of the pattern; -1 if no pattern exists.
+     */
+    public int getFirstPattern(int split) {
+        return mPatternHead[split];
+    }
+
+    /**
+     * Get the next ancillary pattern at the same split point.
+     *
+     * @param pattern   The index of the pattern
+     * @return          The index of the next pattern; -1 if no pattern exists.
+     */
+    public int getNextPattern(int pattern) {
+        return mPatternNext[pattern];
+    }
+
+    /**
+     * Get the left part of speech of the ancillary pattern.
+     *
+     * @param pattern   The index of the pattern
+     * @return          The left part of speech
+     */
+    public int getPatternLeft(int pattern) {
+        return mPatternLeft[pattern];
+    }
+
+    /**
+     * Get the right part of speech of the ancillary pattern.
+     *
+     * @param pattern   The index of the pattern
+     * @return          The right part of speech
+     */
+    public int getPatternRight(int pattern) {
+        return mPatternRight[pattern];
+    }
+
+    /**
+     * Add a matched pattern at the split point.
+     *
+     * @param split     The split point
+     * @param left      The left part of speech
+     * @param right     The right part of speech
+     */
+    private void addPattern(int split, int left, int right) {
+        for (int p = mPatternHead[split]; p >= 0; p = mPatternNext[p]) {
+            if (mPatternLeft[p] == left && mPatternRight[p] == right) {
+                return;
+            }
+        }
+        if (mPatternCount == mPatternNext.length) {
+            int size = mPatternCount * 2;
+            mPatternNext  = grow(mPatternNext, size);
+            mPatternLeft  = grow(mPatternLeft, size);
+            mPatternRight = grow(mPatternRight, size);
+        }
+        int p = mPatternCount++;
+        mPatternLeft[p] = left;
+        mPatternRight[p] = right;
+
+        /* keep the order of insertion */
+        mPatternNext[p] = -1;
+        int last = mPatternHead[split];
+        if (last < 0) {
+            mPatternHead[split] = p;
+        } else {
+            while (mPatternNext[last] >= 0) {
+                last = mPatternNext[last];
+            }
+            mPatternNext[last] = p;
+        }
+    }
+
+    /**
+     * Find the transition from the state.
+     *
+     * @param state     The state
+     * @param ch        The label of the transition
+     * @return          The destination state; -1 if not found.
+     */
+    private int findNext(int state, char ch) {
+        char[] labels = mLabels[state];
+        int low = 0;
+        int high = mNextCount[state] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < ch) {
+                low = mid + 1;
+            } else if (label > ch) {
+                high = mid - 1;
+            } else {
+                return mNext[state][mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add a transition from the state.
+     *
+     * @param state     The state
+     * @param ch        The label of the transition
+     * @return          The new state
+     */
+    private int addNext(int state, char ch) {
+        if (mStateCount == mNextCount.length) {
+            int size = mStateCount * 2;
+            char[][] labels = new char[size][];
+            int[][] next = new int[size][];
+            int[][] posLeft = new int[size][];
+            int[][] posRight = new int[size][];
+            System.arraycopy(mLabels, 0, labels, 0, mStateCount);
+            System.arraycopy(mNext, 0, next, 0, mStateCount);
+            System.arraycopy(mPosLeft, 0, posLeft, 0, mStateCount);
+            System.arraycopy(mPosRight, 0, posRight, 0, mStateCount);
+            mLabels = labels;
+            mNext = next;
+            mPosLeft = posLeft;
+            mPosRight = posRight;
+            mNextCount = grow(mNextCount, size);
+            mPosCount = grow(mPosCount, size);
+        }
+        int newState = mStateCount++;
+
+        char[] labels = mLabels[state];
+        int[] next = mNext[state];
+        int count = mNextCount[state];
+        if (labels == null) {
+            labels = mLabels[state] = new char[2];
+            next = mNext[state] = new int[2];
+        } else if (count == labels.length) {
+            char[] newLabels = new char[count * 2];
+            System.arraycopy(labels, 0, newLabels, 0, count);
+            labels = mLabels[state] = newLabels;
+            next = mNext[state] = grow(next, count * 2);
+        }
+
+        /* insert keeping the labels sorted */
+        int pos = count;
+        while (pos > 0 && labels[pos - 1] > ch) {
+            labels[pos] = labels[pos - 1];
+            next[pos] = next[pos - 1];
+            pos--;
+        }
+        labels[pos] = ch;
+        next[pos] = newState;
+        mNextCount[state] = count + 1;
+
+        return newState;
+    }
+
+    /**
+     * Check the part-of-speeches are connectable.
+     *
+     * @param connectMatrix     The connect matrix
+     * @param right             Right attribute of the preceding word
+     * @param left              Left attribute of the following word
+     * @return                  {@code true} if there are connectable; {@code false} if otherwise
+     */
+    private static boolean connectible(byte[][] connectMatrix, int right, int left) {
+        if (left < 0 || left >= connectMatrix.length) {
+            return false;
+        }
+        byte[] row = connectMatrix[left];
+        return (row != null && right >= 0 && right < row.length && row[right] != 0);
+    }
+
+    /**
+     * Grow an array.
+     *
+     * @param array     The array
+     * @param size      The new size
+     * @return          The new array
+     */
+    private static int[] grow(int[] array, int size) {
+        int[] newArray = new int[size];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
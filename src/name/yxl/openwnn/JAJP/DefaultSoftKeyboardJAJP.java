@@ -997,6 +997,18 @@ public class DefaultSoftKeyboardJAJP extends DefaultSoftKeyboard {
         return index;
     }
 
+    /**
+     * Get the toggle table of the 12-key keyboard.
+     *
+     * @return      The toggle table; {@code null} if the 12-key keyboard of toggle input is not used.
+     */
+    public String[][] getToggleTable() {
+        if (mCurrentKeyboardType != KEYBOARD_12KEY || mInputType != INPUT_TYPE_TOGGLE) {
+            return null;
+        }
+        return getCycleTable();
+    }
+
     /**
      * Get the toggle table for input that is appropriate in current mode.
      * 
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn.JAJP;
+
+/**
+ * The table of the characters which Hiragana is projected to.
+ * <br>
+ * This table is shared by the Romaji-to-Kana converters and
+ * {@link KanaConverter}.  It is indexed directly by the code point in the
+ * Hiragana block (U+3041 to U+3093), followed by U+30F4 (VU) and U+30FC
+ * (the prolonged sound mark); each column holds the character of a
+ * script for the index (U+0000 if the character is not mapped).
+ * The columns are generated from the Hiragana block, and are held as
+ * string constants so that no map is built when the class is loaded.
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class KanaTable {
+    /** Script: full-width Katakana */
+    public static final int FULL_KATAKANA = 0;
+    /** Script: half-width Katakana */
+    public static final int HALF_KATAKANA = 1;
+    /** Script: half-width numeric (by the keys of the 12-key keyboard) */
+    public static final int HALF_NUMERIC = 2;
+    /** Script: full-width numeric (by the keys of the 12-key keyboard) */
+    public static final int FULL_NUMERIC = 3;
+    /** Script: half-width alphabet (by the keys of the 12-key keyboard) */
+    public static final int HALF_ALPHABET = 4;
+    /** Script: full-width alphabet (by the keys of the 12-key keyboard) */
+    public static final int FULL_ALPHABET = 5;
+    /** Script: full-width alphabet (from the half-width alphabet) */
+    public static final int FULL_LATIN = 6;
+
+    /** The first code point of the Hiragana block */
+    private static final char HIRAGANA_FIRST = '\u3041';
+    /** The last code point of the Hiragana block */
+    private static final char HIRAGANA_LAST = '\u3093';
+    /** Index of Katakana VU */
+    private static final int INDEX_VU = HIRAGANA_LAST - HIRAGANA_FIRST + 1;
+    /** Index of the prolonged sound mark */
+    private static final int INDEX_PROLONGED = INDEX_VU + 1;
+
+    /** Offset from the half-width to the full-width form */
+    private static final int FULL_WIDTH_OFFSET = 0xfee0;
+
+    /** Punctuations in the output of Romaji-to-Kana conversion */
+    private static final String PUNCTUATION = "\u3001\u3002\u30fb\uff1f";
+    /** Punctuations in the output of Romaji-to-Kana conversion (full-width Katakana) */
+    private static final String PUNCTUATION_FULL = "\u3001\u3002\u30fb\uff1f";
+    /** Punctuations in the output of Romaji-to-Kana conversion (half-width Katakana) */
+    private static final String PUNCTUATION_HALF = "\uff64\uff61\uff65\u0000";
+
+    /** Full-width Katakana */
+    private static final String COLUMN_FULL_KATAKANA =
+        "\u30a1\u30a2\u30a3\u30a4\u30a5\u30a6\u30a7\u30a8"
+        + "\u30a9\u30aa\u30ab\u30ac\u30ad\u30ae\u30af\u30b0"
+        + "\u30b1\u30b2\u30b3\u30b4\u30b5\u30b6\u30b7\u30b8"
+        + "\u30b9\u30ba\u30bb\u30bc\u30bd\u30be\u30bf\u30c0"
+        + "\u30c1\u30c2\u30c3\u30c4\u30c5\u30c6\u30c7\u30c8"
+        + "\u30c9\u30ca\u30cb\u30cc\u30cd\u30ce\u30cf\u30d0"
+        + "\u30d1\u30d2\u30d3\u30d4\u30d5\u30d6\u30d7\u30d8"
+        + "\u30d9\u30da\u30db\u30dc\u30dd\u30de\u30df\u30e0"
+        + "\u30e1\u30e2\u30e3\u30e4\u30e5\u30e6\u30e7\u30e8"
+        + "\u30e9\u30ea\u30eb\u30ec\u30ed\u30ee\u30ef\u0000"
+        + "\u0000\u30f2\u30f3\u30f4\u30fc";
+    /** Half-width Katakana */
+    private static final String COLUMN_HALF_KATAKANA =
+        "\uff67\uff71\uff68\uff72\uff69\uff73\uff6a\uff74"
+        + "\uff6b\uff75\uff76\uff76\uff77\uff77\uff78\uff78"
+        + "\uff79\uff79\uff7a\uff7a\uff7b\uff7b\uff7c\uff7c"
+        + "\uff7d\uff7d\uff7e\uff7e\uff7f\uff7f\uff80\uff80"
+        + "\uff81\uff81\uff6f\uff82\uff82\uff83\uff83\uff84"
+        + "\uff84\uff85\uff86\uff87\uff88\uff89\uff8a\uff8a"
+        + "\uff8a\uff8b\uff8b\uff8b\uff8c\uff8c\uff8c\uff8d"
+        + "\uff8d\uff8d\uff8e\uff8e\uff8e\uff8f\uff90\uff91"
+        + "\uff92\uff93\uff6c\uff94\uff6d\uff95\uff6e\uff96"
+        + "\uff97\uff98\uff99\uff9a\uff9b\uff9c\uff9c\u0000"
+        + "\u0000\uff66\uff9d\uff73\uff70";
+    /** Voiced/semi-voiced sound mark of half-width Katakana */
+    private static final String COLUMN_HALF_KATAKANA_MARK =
+        "\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000"
+        + "\u0000\u0000\u0000\uff9e\u0000\uff9e\u0000\uff9e"
+        + "\u0000\uff9e\u0000\uff9e\u0000\uff9e\u0000\uff9e"
+        + "\u0000\uff9e\u0000\uff9e\u0000\uff9e\u0000\uff9e"
+        + "\u0000\uff9e\u0000\u0000\uff9e\u0000\uff9e\u0000"
+        + "\uff9e\u0000\u0000\u0000\u0000\u0000\u0000\uff9e"
+        + "\uff9f\u0000\uff9e\uff9f\u0000\uff9e\uff9f\u0000"
+        + "\uff9e\uff9f\u0000\uff9e\uff9f\u0000\u0000\u0000"
+        + "\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000"
+        + "\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000"
+        + "\u0000\u0000\u0000\uff9e\u0000";
+    /** Numeric of the 12-key keyboard (half-width) */
+    private static final String COLUMN_NUMERIC =
+        "\u0031\u0031\u0031\u0031\u0031\u0031\u0031\u0031"
+        + "\u0031\u0031\u0032\u0000\u0032\u0000\u0032\u0000"
+        + "\u0032\u0000\u0032\u0000\u0033\u0000\u0033\u0000"
+        + "\u0033\u0000\u0033\u0000\u0033\u0000\u0034\u0000"
+        + "\u0034\u0000\u0034\u0034\u0000\u0034\u0000\u0034"
+        + "\u0000\u0035\u0035\u0035\u0035\u0035\u0036\u0000"
+        + "\u0000\u0036\u0000\u0000\u0036\u0000\u0000\u0036"
+        + "\u0000\u0000\u0036\u0000\u0000\u0037\u0037\u0037"
+        + "\u0037\u0037\u0038\u0038\u0038\u0038\u0038\u0038"
+        + "\u0039\u0039\u0039\u0039\u0039\u0030\u0030\u0000"
+        + "\u0000\u0030\u0030\u0000\u0030";
+    /** Number of the key presses for the numeric */
+    private static final byte[] COLUMN_NUMERIC_COUNT = {
+        6, 1, 7, 2, 8, 3, 9, 4, 10, 5, 1, 0, 2, 0, 3, 0,
+        4, 0, 5, 0, 1, 0, 2, 0, 3, 0, 4, 0, 5, 0, 1, 0,
+        2, 0, 6, 3, 0, 4, 0, 5, 0, 1, 2, 3, 4, 5, 1, 0,
+        0, 2, 0, 0, 3, 0, 0, 4, 0, 0, 5, 0, 0, 1, 2, 3,
+        4, 5, 4, 1, 5, 2, 6, 3, 1, 2, 3, 4, 5, 4, 1, 0,
+        0, 2, 3, 0, 5
+    };
+    /** Alphabet and symbol of the 12-key keyboard (half-width) */
+    private static final String COLUMN_HALF_ALPHABET =
+        "\u003a\u002e\u007e\u0040\u0000\u002d\u0000\u005f"
+        + "\u0000\u002f\u0041\u0000\u0042\u0000\u0043\u0000"
+        + "\u0000\u0000\u0000\u0000\u0044\u0000\u0045\u0000"
+        + "\u0046\u0000\u0000\u0000\u0000\u0000\u0047\u0000"
+        + "\u0048\u0000\u0000\u0049\u0000\u0000\u0000\u0000"
+        + "\u0000\u004a\u004b\u004c\u0000\u0000\u004d\u0000"
+        + "\u0000\u004e\u0000\u0000\u004f\u0000\u0000\u0000"
+        + "\u0000\u0000\u0000\u0000\u0000\u0050\u0051\u0052"
+        + "\u0053\u0000\u0000\u0054\u0000\u0055\u0000\u0056"
+        + "\u0057\u0058\u0059\u005a\u0000\u0000\u002d\u0000"
+        + "\u0000\u0000\u0000\u0000\u0000";
+    /** Alphabet and symbol of the 12-key keyboard (full-width) */
+    private static final String COLUMN_FULL_ALPHABET =
+        "\uff1a\uff0e\u301c\uff20\u0000\u30fc\u0000\uff3f"
+        + "\u0000\uff0f\uff21\u0000\uff22\u0000\uff23\u0000"
+        + "\u0000\u0000\u0000\u0000\uff24\u0000\uff25\u0000"
+        + "\uff26\u0000\u0000\u0000\u0000\u0000\uff27\u0000"
+        + "\uff28\u0000\u0000\uff29\u0000\u0000\u0000\u0000"
+        + "\u0000\uff2a\uff2b\uff2c\u0000\u0000\uff2d\u0000"
+        + "\u0000\uff2e\u0000\u0000\uff2f\u0000\u0000\u0000"
+        + "\u0000\u0000\u0000\u0000\u0000\uff30\uff31\uff32"
+        + "\uff33\u0000\u0000\uff34\u0000\uff35\u0000\uff36"
+        + "\uff37\uff38\uff39\uff3a\u0000\u0000\u30fc\u0000"
+        + "\u0000\u0000\u0000\u0000\u0000";
+
+    /**
+     * Constructor (not instantiable)
+     */
+    private KanaTable() {
+    }
+
+    /**
+     * Project a string to a script.
+     *
+     * @param input     The input string (Hiragana for the scripts except {@code FULL_LATIN})
+     * @param script    The script
+     * @param outBuf    The output string (cleared at first)
+     * @return          {@code true} if all characters are mapped; {@code false} if not.
+     */
+    public static boolean convert(String input, int script, StringBuffer outBuf) {
+        outBuf.setLength(0);
+        int len = input.length();
+        for (int i = 0; i < len; i++) {
+            if (!append(input.charAt(i), script, outBuf)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Project the output of Romaji-to-Kana conversion to a script of Katakana.
+     * <br>
+     * The Romaji left in the output (e.g. "k" of small "tsu" and "k") is
+     * not projected, and some punctuations are projected to the same script.
+     *
+     * @param output    The output of Romaji-to-Kana conversion (Hiragana)
+     * @param script    {@code FULL_KATAKANA} or {@code HALF_KATAKANA}
+     * @return          The projected string; {@code null} if it cannot be projected.
+     */
+    public static String projectRomkan(String output, int script) {
+        StringBuffer buf = new StringBuffer(output.length() * 2);
+        String punctuation = (script == HALF_KATAKANA) ? PUNCTUATION_HALF : PUNCTUATION_FULL;
+        for (int i = 0; i < output.length(); i++) {
+            char c = output.charAt(i);
+            int p;
+            if ('a' <= c && c <= 'z') {
+                buf.append(c);
+            } else if ((p = PUNCTUATION.indexOf(c)) >= 0) {
+                if (punctuation.charAt(p) == '\u0000') {
+                    return null;
+                }
+                buf.append(punctuation.charAt(p));
+            } else if (!append(c, script, buf)) {
+                return null;
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Append the projection of a character.
+     *
+     * @param c         The character
+     * @param script    The script
+     * @param outBuf    The output string
+     * @return          {@code true} if the character is mapped; {@code false} if not.
+     */
+    private static boolean append(char c, int script, StringBuffer outBuf) {
+        if (script == FULL_LATIN) {
+            if (('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z')) {
+                outBuf.append((char) (c + FULL_WIDTH_OFFSET));
+                return true;
+            }
+            return false;
+        }
+
+        int index;
+        if (HIRAGANA_FIRST <= c && c <= HIRAGANA_LAST) {
+            index = c - HIRAGANA_FIRST;
+        } else if (c == '\u30f4') {
+            index = INDEX_VU;
+        } else if (c == '\u30fc') {
+            index = INDEX_PROLONGED;
+        } else {
+            return false;
+        }
+
+        char out;
+        switch (script) {
+        case FULL_KATAKANA:
+            out = COLUMN_FULL_KATAKANA.charAt(index);
+            if (out == '\u0000') {
+                return false;
+            }
+            outBuf.append(out);
+            return true;
+
+        case HALF_KATAKANA:
+            out = COLUMN_HALF_KATAKANA.charAt(index);
+            if (out == '\u0000') {
+                return false;
+            }
+            outBuf.append(out);
+            char mark = COLUMN_HALF_KATAKANA_MARK.charAt(index);
+            if (mark != '\u0000') {
+                outBuf.append(mark);
+            }
+            return true;
+
+        case HALF_NUMERIC:
+        case FULL_NUMERIC:
+            out = COLUMN_NUMERIC.charAt(index);
+            if (out == '\u0000') {
+                return false;
+            }
+            if (script == FULL_NUMERIC) {
+                out += FULL_WIDTH_OFFSET;
+            }
+            for (int i = COLUMN_NUMERIC_COUNT[index]; i > 0; i--) {
+                outBuf.append(out);
+            }
+            return true;
+
+        case HALF_ALPHABET:
+        case FULL_ALPHABET:
+            out = ((script == HALF_ALPHABET) ? COLUMN_HALF_ALPHABET : COLUMN_FULL_ALPHABET).charAt(index);
+            if (out == '\u0000') {
+                return false;
+            }
+            outBuf.append(out);
+            return true;
+
+        default:
+            return false;
+        }
+    }
+}
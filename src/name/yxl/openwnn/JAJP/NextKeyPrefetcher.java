@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn.JAJP;
+
+import name.yxl.openwnn.*;
+
+/**
+ * The ranking class of the next key input for the 12-key keyboard.
+ * <br>
+ * On the 12-key keyboard, the next key input makes one of a few
+ * readings; the reading followed by the first character of a key, or
+ * the reading whose last character is toggled.  This class ranks them
+ * by the number of the current candidates which continue to each key
+ * and the history of the key inputs, so that the results of prediction
+ * for the most likely readings can be prefetched.
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class NextKeyPrefetcher {
+    /** Maximum number of readings to prefetch */
+    public static final int MAX_PREFETCH = 4;
+
+    /** Number of the candidates to count the next characters */
+    private static final int SAMPLE_SIZE = 32;
+
+    /** Maximum number of keys in a toggle table */
+    private static final int MAX_KEYS = 12;
+
+    /** Index of the history for toggling the last character */
+    private static final int KEY_TOGGLE = MAX_KEYS;
+
+    /** The first character of the history table */
+    private static final char HISTORY_TOP = '\u3041';
+
+    /** The last character of the history table */
+    private static final char HISTORY_END = '\u30fc';
+
+    /** Index of the history for the other characters */
+    private static final int HISTORY_OTHER = HISTORY_END - HISTORY_TOP + 1;
+
+    /** Weight of the number of the candidates */
+    private static final int WEIGHT_CANDIDATE = 4;
+
+    /** Maximum value of the history (all values are halved when reached) */
+    private static final int MAX_HISTORY = 0x4000;
+
+    /** History of the key inputs ([last character][key]) */
+    private int[][] mHistory = new int[HISTORY_OTHER + 1][MAX_KEYS + 1];
+
+    /** Score of each key (work area) */
+    private int[] mScore = new int[MAX_KEYS + 1];
+
+    /** Candidates (work area) */
+    private WnnWord[] mSample = new WnnWord[SAMPLE_SIZE];
+
+    /** The previous reading */
+    private String mPrevReading = "";
+
+    /** The toggle table of the previous reading */
+    private String[][] mPrevTable = null;
+
+    /** The row of the toggle table for toggling the previous reading */
+    private String[] mPrevToggleRow = null;
+
+    /**
+     * Constructor
+     */
+    public NextKeyPrefetcher() {
+    }
+
+    /**
+     * Learn the key input from the change of the reading.
+     *
+     * @param reading       The current reading
+     * @param table         The toggle table
+     * @param toggleRow     The row of the toggle table for toggling the last character ({@code null} if it cannot be toggled)
+     */
+    public void learn(String reading, String[][] table, String[] toggleRow) {
+        String prev = mPrevReading;
+        int len = prev.length();
+        if (len > 0 && mPrevTable == table && table != null) {
+            int[] history = mHistory[historyIndex(prev.charAt(len - 1))];
+            if (reading.length() == len + 1 && reading.startsWith(prev)) {
+                /* a key input appended a character */
+                int key = findKey(table, reading.charAt(len), true);
+                if (key >= 0) {
+                    addHistory(history, key);
+                }
+            } else if (reading.length() == len && mPrevToggleRow != null
+                       && reading.regionMatches(0, prev, 0, len - 1)
+                       && reading.charAt(len - 1) == toggle(mPrevToggleRow, prev.charAt(len - 1))) {
+                /* a key input toggled the last character */
+                addHistory(history, KEY_TOGGLE);
+            }
+        }
+        mPrevReading = reading;
+        mPrevTable = table;
+        mPrevToggleRow = toggleRow;
+    }
+
+    /**
+     * Rank the readings which may be input next.
+     *
+     * @param reading       The current reading
+     * @param candidates    The candidates of the current reading
+     * @param table         The toggle table
+     * @param toggleRow     The row of the toggle table for toggling the last character ({@code null} if it cannot be toggled)
+     * @param out           The array to store the readings (its length must be {@code MAX_PREFETCH} or more)
+     * @return              The number of the readings stored into {@code out}
+     */
+    public int rank(String reading, WnnEngine candidates, String[][] table, String[] toggleRow, String[] out) {
+        int len = reading.length();
+        if (len == 0 || table == null || table.length > MAX_KEYS) {
+            return 0;
+        }
+        int[] score = mScore;
+        for (int i = 0; i < score.length; i++) {
+            score[i] = 0;
+        }
+
+        /* count the candidates which continue to each key */
+        if (candidates != null) {
+            int n = candidates.getCandidates(0, SAMPLE_SIZE, mSample);
+            for (int i = 0; i < n; i++) {
+                String stroke = mSample[i].stroke;
+                mSample[i] = null;
+                if (stroke != null && stroke.length() > len && stroke.startsWith(reading)) {
+                    int key = findKey(table, stroke.charAt(len), false);
+                    if (key >= 0) {
+                        score[key] += WEIGHT_CANDIDATE;
+                    }
+                }
+            }
+        }
+
+        /* add the history */
+        int[] history = mHistory[historyIndex(reading.charAt(len - 1))];
+        for (int i = 0; i < table.length; i++) {
+            score[i] += history[i];
+        }
+        score[KEY_TOGGLE] = (toggleRow != null) ? history[KEY_TOGGLE] : 0;
+
+        /* select the keys of the highest scores */
+        int count = 0;
+        while (count < MAX_PREFETCH) {
+            int best = -1;
+            for (int i = 0; i < score.length; i++) {
+                if (score[i] > 0 && (best < 0 || score[best] < score[i])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            score[best] = 0;
+            if (best == KEY_TOGGLE) {
+                char last = reading.charAt(len - 1);
+                char next = toggle(toggleRow, last);
+                if (next != last) {
+                    out[count++] = reading.substring(0, len - 1) + next;
+                }
+            } else {
+                out[count++] = reading + table[best][0];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the index of the history table.
+     *
+     * @param c     The last character of the reading
+     * @return      The index
+     */
+    private static int historyIndex(char c) {
+        return (HISTORY_TOP <= c && c <= HISTORY_END) ? (c - HISTORY_TOP) : HISTORY_OTHER;
+    }
+
+    /**
+     * Add a key input to the history.
+     *
+     * @param history   The history of the last character
+     * @param key       The key
+     */
+    private static void addHistory(int[] history, int key) {
+        if (++history[key] >= MAX_HISTORY) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Find the key which inputs the character.
+     *
+     * @param table     The toggle table
+     * @param c         The character
+     * @param topOnly   {@code true} if only the first characters of the keys are compared
+     * @return          The index of the key; -1 if not found.
+     */
+    private static int findKey(String[][] table, char c, boolean topOnly) {
+        for (int i = 0; i < table.length; i++) {
+            String[] row = table[i];
+            int size = (topOnly) ? 1 : row.length;
+            for (int j = 0; j < size; j++) {
+                if (row[j].length() == 1 && row[j].charAt(0) == c) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the character toggled from the character.
+     *
+     * @param row       The row of the toggle table
+     * @param c         The character
+     * @return          The toggled character; the same character if it is not in the row.
+     */
+    private static char toggle(String[] row, char c) {
+        for (int i = 0; i < row.length; i++) {
+            if (row[i].length() == 1 && row[i].charAt(0) == c) {
+                String next = row[(i + 1) % row.length];
+                return (next.length() == 1) ? next.charAt(0) : c;
+            }
+        }
+        return c;
+    }
+}
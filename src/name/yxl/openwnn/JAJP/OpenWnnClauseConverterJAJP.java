@@ -31,15 +31,21 @@ public class OpenWnnClauseConverterJAJP {
     /** Score(frequency value) of word in the user dictionary */
     private static final int FREQ_USER  = 500;
 
-    /** Maximum limit length of input */
+    /** Maximum limit length of input (the length of a window for consecutive clause conversion) */
     public static final int MAX_INPUT_LENGTH = 50;
+    /** Maximum length of a clause */
+    private static final int MAX_CLAUSE_LENGTH = 20;
+    /** Length of the overlap of windows for consecutive clause conversion */
+    private static final int SEGMENT_OVERLAP = MAX_CLAUSE_LENGTH;
 
     /** search cache for unique independent words (jiritsugo) */
     private HashMap<String, ArrayList<WnnWord>> mIndepWordBag;
     /** search cache for all independent words (jiritsugo) */
     private HashMap<String, ArrayList<WnnWord>> mAllIndepWordBag;
-    /** search cache for ancillary words (fuzokugo) */
-    private HashMap<String, ArrayList<WnnWord>> mFzkPatterns;
+    /** automaton of ancillary words (fuzokugo) */
+    private AncillaryWordAutomaton mFzkAutomaton;
+    /** work area for an ancillary pattern */
+    private WnnWord mFzkWork;
 
     /** connect matrix for generating a clause */
     private byte[][] mConnectMatrix;
@@ -48,10 +54,47 @@ public class OpenWnnClauseConverterJAJP {
     private WnnDictionary mDictionary;
 
     /** candidates of conversion */
-    private LinkedList mConvertResult;
-
-    /** work area for consecutive clause conversion */
-    private WnnSentence[] mSentenceBuffer;
+    private ClauseIterator mConvertResult;
+
+    /** Number of the candidates which are sorted at first */
+    public static final int CANDIDATE_TOP_K = 32;
+
+    /** work area for consecutive clause conversion (score of the best sub-sentence) */
+    private int[] mSentenceScore;
+    /** work area for consecutive clause conversion (start position of the last clause; -1 if none) */
+    private int[] mSentenceStart;
+    /** work area for consecutive clause conversion (stem of the last clause; {@code null} if default) */
+    private WnnWord[] mSentenceStem;
+    /** work area for consecutive clause conversion (length of the stem of the last clause) */
+    private int[] mSentenceSplit;
+    /** work area for consecutive clause conversion (right part of speech of the ancillary pattern) */
+    private int[] mSentenceFzkRight;
+
+    /** Initial size of the work area for scoring clauses */
+    private static final int CLAUSE_BUFFER_SIZE = 64;
+    /** work area for scoring clauses (stem) */
+    private WnnWord[] mClauseStem;
+    /** work area for scoring clauses (length of the stem) */
+    private int[] mClauseSplit;
+    /** work area for scoring clauses (right part of speech of the ancillary pattern; -1 if none) */
+    private int[] mClauseFzkRight;
+    /** work area for scoring clauses (score) */
+    private int[] mClauseScore;
+    /**
+     * work area for scoring clauses (indexes of the clauses).
+     * <br>
+     * The top {@code mClauseTopCount} indexes are sorted in order of the score,
+     * and the rest are stored as a binary heap.
+     */
+    private int[] mClauseOrder;
+    /** Number of the scored clauses */
+    private int mClauseCount;
+    /** Number of the sorted clauses at the top of {@code mClauseOrder} */
+    private int mClauseTopCount;
+    /** Number of the clauses in the heap of {@code mClauseOrder} */
+    private int mClauseHeapCount;
+    /** Generation of the work area for scoring clauses */
+    private int mClauseGeneration;
 
     /** part of speech (default) */
     private WnnPOS mPosDefault;
@@ -68,16 +111,21 @@ public class OpenWnnClauseConverterJAJP {
     /** The candidate filter */
     private CandidateFilter mFilter = null;
 
+    /** The signal to stop the conversion ({@code null} if not cancellable) */
+    private CancellationSignal mCancellation = null;
+
     /**
      * Constructor
      */
     public OpenWnnClauseConverterJAJP() {
         mIndepWordBag  = new HashMap<String, ArrayList<WnnWord>>();
         mAllIndepWordBag  = new HashMap<String, ArrayList<WnnWord>>();
-        mFzkPatterns   = new HashMap();
-        mConvertResult = new LinkedList();
+        mFzkAutomaton  = new AncillaryWordAutomaton();
+        mFzkWork       = new WnnWord();
+        mConvertResult = new ClauseIterator();
 
-        mSentenceBuffer = new WnnSentence[MAX_INPUT_LENGTH];
+        allocateSentenceBuffer(MAX_INPUT_LENGTH);
+        allocateClauseBuffer(CLAUSE_BUFFER_SIZE);
     }
 
     /**
@@ -89,6 +137,11 @@ public class OpenWnnClauseConverterJAJP {
         /* get connect matrix */
         mConnectMatrix = dict.getConnectMatrix();
 
+        /* compile ancillary words (only once for a dictionary) */
+        if (mDictionary != dict) {
+            mFzkAutomaton.compile(dict);
+        }
+
         /* clear dictionary settings */
         mDictionary = dict;
         dict.clearDictionary();
@@ -97,7 +150,6 @@ public class OpenWnnClauseConverterJAJP {
         /* clear work areas */
         mIndepWordBag.clear();
         mAllIndepWordBag.clear();
-        mFzkPatterns.clear();
         
         /* get part of speech tags */
         mPosDefault      = dict.getPOS(WnnDictionary.POS_TYPE_MEISI);
@@ -115,6 +167,27 @@ public class OpenWnnClauseConverterJAJP {
     	mFilter = filter;
     }
 
+    /**
+     * Set the signal to stop the conversion.
+     * <br>
+     * The conversion fails when it is cancelled.  The independent words
+     * and the ancillary words got from the dictionary are not affected.
+     *
+     * @param signal    The signal ({@code null} if not cancellable)
+     */
+    public void setCancellationSignal(CancellationSignal signal) {
+        mCancellation = signal;
+    }
+
+    /**
+     * Whether the conversion is cancelled or not.
+     *
+     * @return      {@code true} if cancelled; {@code false} if otherwise.
+     */
+    private boolean isCancelled() {
+        return (mCancellation != null) && mCancellation.isCancelled();
+    }
+
     /**
      * Kana-to-Kanji conversion (single clause).
      * <br>
@@ -133,98 +206,178 @@ public class OpenWnnClauseConverterJAJP {
             return null;
         }
 
-        /* clear the candidates list */
-        mConvertResult.clear();
-
         /* try single clause conversion */
-        if (!singleClauseConvert(mConvertResult, input, mPosEndOfClause2, true)) {
+        if (!scoreClauses(input, mPosEndOfClause2, true)) {
             return null;
         }
-        return mConvertResult.iterator();
+
+        /* sort the best clauses; the rest are sorted on demand */
+        selectTopClauses(CANDIDATE_TOP_K);
+        mConvertResult.reset(input);
+        return mConvertResult;
     }
 
     /**
      * Consecutive clause conversion.
+     * <br>
+     * If the input is longer than {@code MAX_INPUT_LENGTH}, the input is
+     * converted by the window of {@code MAX_INPUT_LENGTH} characters.  The
+     * clauses of the best sequence in a window are fixed except for the
+     * last {@code SEGMENT_OVERLAP} characters, and the next window starts
+     * from the end of the fixed clauses.  So the work area and the time for
+     * a window are constant for any length of the input.
      *
      * @param input		The input string
      * @return			The result of consecutive clause conversion; {@code null} if fail.
      */
     public WnnSentence consecutiveClauseConvert(String input) {
-        LinkedList clauses = new LinkedList();
+        int len = input.length();
+        if (len == 0) {
+            return null;
+        }
+
+        ArrayList<WnnClause> clauses = new ArrayList<WnnClause>();
+        int score = 0;
+        int pos = 0;
+        while (pos < len) {
+            int end = pos + MAX_INPUT_LENGTH;
+            boolean last = (end >= len);
+            if (last) {
+                end = len;
+            }
+            String segment = (pos == 0 && last) ? input : input.substring(pos, end);
+            if (!convertSegment(segment, last)) {
+                return null;
+            }
+
+            /* fix the clauses before the overlap (the whole if it is the last window) */
+            int fixed = appendClauses(clauses, segment, last ? segment.length() : segment.length() - SEGMENT_OVERLAP);
+            score += mSentenceScore[fixed - 1];
+            pos += fixed;
+        }
+
+        WnnSentence sentence = new WnnSentence(input, clauses);
+        sentence.frequency = score;
+        return sentence;
+    }
+
+    /**
+     * Consecutive clause conversion of a segment.
+     * <br>
+     * The best sequence of clauses is stored to the work areas
+     * ({@code mSentenceScore}, {@code mSentenceStart}, etc.).
+     *
+     * @param input				The input string (not longer than {@code MAX_INPUT_LENGTH})
+     * @param endOfSentence		{@code true} if the end of the segment is the end of the sentence
+     * @return					{@code true} if success; {@code false} if fail.
+     */
+    private boolean convertSegment(String input, boolean endOfSentence) {
+        int len = input.length();
 
         /* clear the cache which is not matched */
-        for (int i = 0; i < input.length(); i++) {
-            mSentenceBuffer[i] = null;
+        for (int i = 0; i < len; i++) {
+            mSentenceStart[i] = -1;
+            mSentenceStem[i] = null;
         }
-        WnnSentence[] sentence = mSentenceBuffer;
+        int[] score = mSentenceScore;
+        int[] from = mSentenceStart;
 
         /* consecutive clause conversion */
-        for (int start = 0; start < input.length(); start++) {
-            if (start != 0 && sentence[start-1] == null) {
+        for (int start = 0; start < len; start++) {
+            if (isCancelled()) {
+                return false;
+            }
+            if (start != 0 && from[start-1] < 0) {
                 continue;
             }
+            int prevScore = (start == 0) ? 0 : score[start-1];
 
             /* limit the length of a clause */
-            int end = input.length();
-            if (end > start + 20) {
-                end = start + 20;
+            int end = len;
+            if (end > start + MAX_CLAUSE_LENGTH) {
+                end = start + MAX_CLAUSE_LENGTH;
             }
             /* make clauses */
             for ( ; end > start; end--) {
                 int idx = end - 1;
 
                 /* cutting a branch */
-                if (sentence[idx] != null) {
-                    if (start != 0) {
-                        if (sentence[idx].frequency > sentence[start-1].frequency + CLAUSE_COST + FREQ_LEARN) {
-                            /* there may be no way to be the best sequence from the 'start' */
-                            break;
-                        }
-                    } else {
-                        if (sentence[idx].frequency > CLAUSE_COST + FREQ_LEARN) {
-                            /* there may be no way to be the best sequence from the 'start' */
-                            break;
-                        }
+                if (from[idx] >= 0) {
+                    if (score[idx] > prevScore + CLAUSE_COST + FREQ_LEARN) {
+                        /* there may be no way to be the best sequence from the 'start' */
+                        break;
                     }
                 }
 
                 String key = input.substring(start, end);
-                clauses.clear();
-                WnnClause bestClause = null;
-                if (end == input.length()) {
-                    /* get the clause which can be the end of the sentence */
-                    singleClauseConvert(clauses, key, mPosEndOfClause1, false);
+                WnnPOS terminal = (end == len && endOfSentence) ? mPosEndOfClause1 : mPosEndOfClause3;
+
+                /* score the best clause (the clause is not created here) */
+                int clauseScore;
+                WnnWord stem;
+                int split;
+                int fzkRight;
+                if (scoreClauses(key, terminal, false)) {
+                    clauseScore = mClauseScore[0];
+                    stem = mClauseStem[0];
+                    split = mClauseSplit[0];
+                    fzkRight = mClauseFzkRight[0];
                 } else {
-                    /* get the clause which is not the end of the sentence */
-                    singleClauseConvert(clauses, key, mPosEndOfClause3, false);
+                    /* default clause */
+                    clauseScore = (CLAUSE_COST - 1) * key.length();
+                    stem = null;
+                    split = key.length();
+                    fzkRight = -1;
                 }
-                if (clauses.isEmpty()) {
-                    bestClause = defaultClause(key);
-                } else {
-                    bestClause = (WnnClause)clauses.get(0);
-                }
-
-                /* make a sub-sentence */
-                WnnSentence ws;
-                if (start == 0) {
-                    ws = new WnnSentence(key, bestClause);
-                } else {
-                    ws = new WnnSentence(sentence[start-1], bestClause);
-                }
-                ws.frequency += CLAUSE_COST;
+                int ws = prevScore + clauseScore + CLAUSE_COST;
 
                 /* update the best sub-sentence on the cache buffer */
-                if (sentence[idx] == null || (sentence[idx].frequency < ws.frequency)) {
-                    sentence[idx] = ws;
+                if (from[idx] < 0 || score[idx] < ws) {
+                    score[idx] = ws;
+                    from[idx] = start;
+                    mSentenceStem[idx] = stem;
+                    mSentenceSplit[idx] = split;
+                    mSentenceFzkRight[idx] = fzkRight;
                 }
             }
         }
 
-        /* return the result of the consecutive clause conversion */
-        if (sentence[input.length() - 1] != null) {
-            return sentence[input.length() - 1];
+        return (from[len - 1] >= 0);
+    }
+
+    /**
+     * Append the clauses of the best sequence in a segment.
+     * <br>
+     * Only the clauses which end within {@code limit} characters are appended.
+     * At least one clause is appended.
+     *
+     * @param clauses		Where to append the clauses
+     * @param input			The input string of the segment
+     * @param limit			The maximum length of the appended clauses
+     * @return				The length of the appended clauses
+     */
+    private int appendClauses(ArrayList<WnnClause> clauses, String input, int limit) {
+        int[] from = mSentenceStart;
+
+        /* find the last boundary of clauses within the limit */
+        int fixed = input.length();
+        while (fixed > limit && from[fixed - 1] > 0) {
+            fixed = from[fixed - 1];
         }
-        return null;
+
+        /* create the clauses of the best sequence */
+        int index = clauses.size();
+        for (int idx = fixed - 1; idx >= 0; idx = from[idx] - 1) {
+            String key = input.substring(from[idx], idx + 1);
+            WnnClause clause;
+            if (mSentenceStem[idx] == null) {
+                clause = defaultClause(key);
+            } else {
+                clause = createClause(key, mSentenceStem[idx], mSentenceSplit[idx], mSentenceFzkRight[idx]);
+            }
+            clauses.add(index, clause);
+        }
+        return fixed;
     }
 
     /**
@@ -246,41 +399,63 @@ public class OpenWnnClauseConverterJAJP {
     }
 
     /**
-     * Single clause conversion.
+     * Score the clauses.
+     * <br>
+     * The valid combinations of a stem and an ancillary pattern are stored
+     * to the work arrays ({@code mClauseStem}, {@code mClauseSplit},
+     * {@code mClauseFzkRight} and {@code mClauseScore}) without creating
+     * {@link WnnClause}.  If {@code all} is {@code false}, only the best one
+     * is stored at index 0.  Otherwise, call {@link #selectTopClauses(int)}
+     * to order them.
      *
-     * @param clauseList	Where to store the results
      * @param input			Input string
      * @param terminal		Part of speech tag at the terminal
      * @param all			Get all candidates or not
      * @return				{@code true} if success; {@code false} if fail.
      */
-    private boolean singleClauseConvert(LinkedList clauseList, String input, WnnPOS terminal, boolean all) {
+    private boolean scoreClauses(String input, WnnPOS terminal, boolean all) {
         boolean ret = false;
+        mClauseCount = 0;
+        mClauseTopCount = 0;
+        mClauseHeapCount = 0;
+        mClauseGeneration++;
 
         /* get clauses without ancillary word */
         ArrayList<WnnWord> stems = getIndependentWords(input, all);
         if (stems != null && (!stems.isEmpty())) {
-            Iterator<WnnWord> stemsi = stems.iterator();
-            while (stemsi.hasNext()) {
-                WnnWord stem = stemsi.next();
-                if (addClause(clauseList, input, stem, null, terminal, all)) {
+            int size = stems.size();
+            for (int i = 0; i < size; i++) {
+                WnnWord stem = stems.get(i);
+                if (addClauseScore(stem, input.length(), 0, -1, terminal, all)) {
                     ret = true;
                 }
             }
         }
 
+        /* get ancillary patterns at all split points */
+        AncillaryWordAutomaton fzkAutomaton = mFzkAutomaton;
+        fzkAutomaton.prepare(mDictionary, input);
+        fzkAutomaton.scan(input, mConnectMatrix);
+
         /* get clauses with ancillary word */
         int max = CLAUSE_COST * 2;
         for (int split = 1; split < input.length(); split++) {
-            /* get ancillary patterns */
-            String str = input.substring(split);
-            ArrayList<WnnWord> fzks = getAncillaryPattern(str);
-            if (fzks == null || fzks.isEmpty()) {
+            if (isCancelled()) {
+                return false;
+            }
+            int first = fzkAutomaton.getFirstPattern(split);
+            if (first < 0) {
                 continue;
             }
-            
+            if (mFilter != null) {
+                mFzkWork.candidate = input.substring(split);
+                if (!mFilter.isAllowed(mFzkWork)) {
+                    continue;
+                }
+            }
+
             /* get candidates of stem in a clause */
-            str = input.substring(0, split);
+            String str = input.substring(0, split);
             stems = getIndependentWords(str, all);
             if (stems == null || stems.isEmpty()) {
                 if (mDictionary.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY, str) <= 0) {
@@ -289,15 +464,14 @@ public class OpenWnnClauseConverterJAJP {
                     continue;
                 }
             }
-            /* make clauses */
-            Iterator<WnnWord> stemsi = stems.iterator();
-            while (stemsi.hasNext()) {
-                WnnWord stem = stemsi.next();
+            /* score clauses */
+            int size = stems.size();
+            for (int i = 0; i < size; i++) {
+                WnnWord stem = stems.get(i);
                 if (all || stem.frequency > max) {
-                    Iterator<WnnWord> fzksi  = fzks.iterator();
-                    while (fzksi.hasNext()) {
-                        WnnWord fzk = fzksi.next();
-                        if (addClause(clauseList, input, stem, fzk, terminal, all)) {
+                    for (int p = first; p >= 0; p = fzkAutomaton.getNextPattern(p)) {
+                        if (addClauseScore(stem, split, fzkAutomaton.getPatternLeft(p),
+                                           fzkAutomaton.getPatternRight(p), terminal, all)) {
                             ret = true;
                             max = stem.frequency;
                         }
@@ -309,146 +483,265 @@ public class OpenWnnClauseConverterJAJP {
     }
 
     /**
-     * Add valid clause to the candidates list.
+     * Add the score of a valid clause to the work arrays.
      *
-     * @param clauseList	Where to store the results
-     * @param input			Input string
      * @param stem			Stem of the clause (a independent word)
-     * @param fzk			Ancillary pattern
+     * @param split			Length of the stem in the reading
+     * @param fzkLeft		Left part of speech of the ancillary pattern
+     * @param fzkRight		Right part of speech of the ancillary pattern; -1 if the clause has no ancillary word
      * @param terminal		Part of speech tag at the terminal
      * @param all			Get all candidates or not
-     * @return				{@code true} if add the clause to the list; {@code false} if not.
+     * @return				{@code true} if add the score; {@code false} if not.
      */
-    private boolean addClause(LinkedList<WnnClause> clauseList, String input, WnnWord stem, WnnWord fzk,
-                              WnnPOS terminal, boolean all) {
-        WnnClause clause = null;
+    private boolean addClauseScore(WnnWord stem, int split, int fzkLeft, int fzkRight,
+                                   WnnPOS terminal, boolean all) {
         /* check if the part of speech is valid */
-        if (fzk == null) {
-            if (connectible(stem.partOfSpeech.right, terminal.left)) {
-                clause = new WnnClause(input, stem);
+        if (fzkRight < 0) {
+            if (!connectible(stem.partOfSpeech.right, terminal.left)) {
+                return false;
             }
         } else {
-            if (connectible(stem.partOfSpeech.right, fzk.partOfSpeech.left)
-                && connectible(fzk.partOfSpeech.right, terminal.left)) {
-                clause = new WnnClause(input, stem, fzk);
+            if (!connectible(stem.partOfSpeech.right, fzkLeft)
+                || !connectible(fzkRight, terminal.left)) {
+                return false;
             }
         }
-        if (clause == null) {
-            return false;
-        }
-        if (mFilter != null && !mFilter.isAllowed(clause)) {
+        if (mFilter != null && !mFilter.isAllowed(stem)) {
         	return false;
         }
 
-        /* store to the list */
-        if (clauseList.isEmpty()) {
+        /* store to the work arrays */
+        int score = stem.frequency;
+        int index;
+        if (mClauseCount == 0) {
             /* add if the list is empty */
-            clauseList.add(0, clause);
-            return true;
+            index = mClauseCount++;
+        } else if (!all) {
+            /* reserve only the best clause */
+            if (mClauseScore[0] >= score) {
+                return false;
+            }
+            index = 0;
         } else {
-            if (!all) {
-                /* reserve only the best clause */
-                WnnClause best = (WnnClause)clauseList.get(0);
-                if (best.frequency < clause.frequency) {
-                    clauseList.set(0, clause);
-                    return true;
-                }
-            } else {
-                /* reserve all clauses */
-                Iterator clauseListi = clauseList.iterator();
-                int index = 0;
-                while (clauseListi.hasNext()) {
-                    WnnClause clausei = (WnnClause)clauseListi.next();
-                    if (clausei.frequency < clause.frequency) {
-                        break;
-                    }
-                    index++;
-                }
-                clauseList.add(index, clause);
-                return true;
+            /* reserve all clauses */
+            if (mClauseCount == mClauseScore.length) {
+                allocateClauseBuffer(mClauseCount * 2);
             }
+            index = mClauseCount++;
         }
-
-        return false;
+        mClauseStem[index] = stem;
+        mClauseSplit[index] = split;
+        mClauseFzkRight[index] = fzkRight;
+        mClauseScore[index] = score;
+        return true;
     }
 
     /**
-     * Check the part-of-speeches are connectable.
+     * Select the best clauses from the scored clauses.
+     * <br>
+     * The best {@code k} clauses are selected with a bounded binary heap
+     * and sorted in order of the score in O(n log k).  The rest of the
+     * clauses are kept as a binary heap to be taken by {@link #pollClause()}.
+     * The clauses which have the same score keep the order of scoring.
      *
-     * @param right		Right attribute of the preceding word/clause
-     * @param left		Left attribute of the following word/clause
-     * @return			{@code true} if there are connectable; {@code false} if otherwise
+     * @param k			Number of the clauses to be sorted
      */
-    private boolean connectible(int right, int left) {
-        try {
-            if (mConnectMatrix[left][right] != 0) {
-                return true;
+    private void selectTopClauses(int k) {
+        int count = mClauseCount;
+        int[] order = mClauseOrder;
+        if (k > count) {
+            k = count;
+        }
+
+        /* keep the best k clauses in a heap whose root is the worst */
+        int rest = k;
+        for (int c = 0; c < count; c++) {
+            if (c < k) {
+                order[c] = c;
+                siftUp(order, 0, c, false);
+            } else if (isBetterClause(c, order[0])) {
+                order[rest++] = order[0];
+                order[0] = c;
+                siftDown(order, 0, k, 0, false);
+            } else {
+                order[rest++] = c;
             }
-        } catch (Exception ex) {
         }
-        return false;
+
+        /* sort the best clauses by taking the worst one to the tail */
+        for (int last = k - 1; last > 0; last--) {
+            int worst = order[0];
+            order[0] = order[last];
+            order[last] = worst;
+            siftDown(order, 0, last, 0, false);
+        }
+        mClauseTopCount = k;
+
+        /* make the rest a heap whose root is the best */
+        int heapCount = count - k;
+        for (int i = heapCount / 2 - 1; i >= 0; i--) {
+            siftDown(order, k, heapCount, i, true);
+        }
+        mClauseHeapCount = heapCount;
     }
 
     /**
-     * Get all exact matched ancillary words(Fuzokugo) list.
+     * Take the best clause out of the rest of the clauses.
      *
-     * @param input		Search key
-     * @return			List of ancillary words
+     * @return			The index of the clause; -1 if there is no clause.
      */
-    private ArrayList<WnnWord> getAncillaryPattern(String input) {
-        if (input.length() == 0) {
-            return null;
-        }
-
-        HashMap<String,ArrayList<WnnWord>> fzkPat = mFzkPatterns;
-        ArrayList<WnnWord> fzks = fzkPat.get(input);
-        if (fzks != null) {
-            return fzks;
+    private int pollClause() {
+        int heapCount = mClauseHeapCount;
+        if (heapCount == 0) {
+            return -1;
         }
+        int[] order = mClauseOrder;
+        int base = mClauseTopCount;
+        int best = order[base];
+        heapCount--;
+        order[base] = order[base + heapCount];
+        siftDown(order, base, heapCount, 0, true);
+        mClauseHeapCount = heapCount;
+        return best;
+    }
 
-        /* set dictionaries */
-        WnnDictionary dict = mDictionary;
-        dict.clearDictionary();
-        dict.clearApproxPattern();                    
-        dict.setDictionary(6, 400, 500);
+    /**
+     * Compare the scored clauses.
+     *
+     * @param a			Index of a clause
+     * @param b			Index of another clause
+     * @return			{@code true} if the clause {@code a} precedes the clause {@code b}; {@code false} if not.
+     */
+    private boolean isBetterClause(int a, int b) {
+        int[] score = mClauseScore;
+        return (score[a] > score[b]) || (score[a] == score[b] && a < b);
+    }
 
-        for (int start = input.length() - 1; start >= 0; start--) {
-            String key = input.substring(start);
+    /**
+     * Move up a node of the heap.
+     *
+     * @param heap			The array of the heap
+     * @param base			The offset of the heap in the array
+     * @param node			The node to move
+     * @param bestOnTop		{@code true} if the root is the best; {@code false} if the root is the worst.
+     */
+    private void siftUp(int[] heap, int base, int node, boolean bestOnTop) {
+        int c = heap[base + node];
+        while (node > 0) {
+            int parent = (node - 1) / 2;
+            int p = heap[base + parent];
+            if (isBetterClause(c, p) != bestOnTop) {
+                break;
+            }
+            heap[base + node] = p;
+            node = parent;
+        }
+        heap[base + node] = c;
+    }
 
-            fzks = fzkPat.get(key);
-            if (fzks != null) {
-                continue;
+    /**
+     * Move down a node of the heap.
+     *
+     * @param heap			The array of the heap
+     * @param base			The offset of the heap in the array
+     * @param size			The size of the heap
+     * @param node			The node to move
+     * @param bestOnTop		{@code true} if the root is the best; {@code false} if the root is the worst.
+     */
+    private void siftDown(int[] heap, int base, int size, int node, boolean bestOnTop) {
+        int c = heap[base + node];
+        while (true) {
+            int child = node * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size
+                && isBetterClause(heap[base + child + 1], heap[base + child]) == bestOnTop) {
+                child++;
             }
+            int h = heap[base + child];
+            if (isBetterClause(h, c) != bestOnTop) {
+                break;
+            }
+            heap[base + node] = h;
+            node = child;
+        }
+        heap[base + node] = c;
+    }
 
-            fzks = new ArrayList<WnnWord>();
-            mFzkPatterns.put(key, fzks);
+    /**
+     * Create a clause from the scored combination.
+     *
+     * @param input			Input string
+     * @param stem			Stem of the clause (a independent word)
+     * @param split			Length of the stem in the reading
+     * @param fzkRight		Right part of speech of the ancillary pattern; -1 if the clause has no ancillary word
+     * @return				The clause
+     */
+    private WnnClause createClause(String input, WnnWord stem, int split, int fzkRight) {
+        if (fzkRight < 0) {
+            return new WnnClause(input, stem);
+        }
+        WnnWord fzk = mFzkWork;
+        fzk.candidate = input.substring(split);
+        fzk.partOfSpeech.left = 0;
+        fzk.partOfSpeech.right = fzkRight;
+        return new WnnClause(input, stem, fzk);
+    }
 
-            /* search ancillary words */
-            dict.searchWord(WnnDictionary.SEARCH_EXACT, WnnDictionary.ORDER_BY_FREQUENCY, key);
-            WnnWord word;
-            while ((word = dict.getNextWord()) != null) {
-                fzks.add(word);
-            }
+    /**
+     * Allocate the work arrays for scoring clauses.
+     *
+     * @param size		Size of the arrays
+     */
+    private void allocateClauseBuffer(int size) {
+        int count = mClauseCount;
+        WnnWord[] stem = new WnnWord[size];
+        int[] split = new int[size];
+        int[] fzkRight = new int[size];
+        int[] score = new int[size];
+        int[] order = new int[size];
+        if (count > 0) {
+            System.arraycopy(mClauseStem, 0, stem, 0, count);
+            System.arraycopy(mClauseSplit, 0, split, 0, count);
+            System.arraycopy(mClauseFzkRight, 0, fzkRight, 0, count);
+            System.arraycopy(mClauseScore, 0, score, 0, count);
+            System.arraycopy(mClauseOrder, 0, order, 0, count);
+        }
+        mClauseStem = stem;
+        mClauseSplit = split;
+        mClauseFzkRight = fzkRight;
+        mClauseScore = score;
+        mClauseOrder = order;
+    }
 
-            /* concatenate sequence of ancillary words */
-            for (int end = input.length() - 1; end > start; end--) {
-                ArrayList<WnnWord> followFzks = fzkPat.get(input.substring(end));
-                if (followFzks == null ||  followFzks.isEmpty()) {
-                    continue;
-                }
-                dict.searchWord(WnnDictionary.SEARCH_EXACT, WnnDictionary.ORDER_BY_FREQUENCY, input.substring(start, end));
-                while ((word = dict.getNextWord()) != null) {
-                    Iterator<WnnWord> followFzksi = followFzks.iterator();
-                    while (followFzksi.hasNext()) {
-                        WnnWord follow = followFzksi.next();
-                        if (connectible(word.partOfSpeech.right, follow.partOfSpeech.left)) {
-                            fzks.add(new WnnWord(key, key, new WnnPOS(word.partOfSpeech.left, follow.partOfSpeech.right)));
-                        }
-                    }
-                }
-            }
+    /**
+     * Allocate the work arrays for consecutive clause conversion.
+     *
+     * @param size		Size of the arrays
+     */
+    private void allocateSentenceBuffer(int size) {
+        mSentenceScore = new int[size];
+        mSentenceStart = new int[size];
+        mSentenceStem = new WnnWord[size];
+        mSentenceSplit = new int[size];
+        mSentenceFzkRight = new int[size];
+    }
+
+    /**
+     * Check the part-of-speeches are connectable.
+     *
+     * @param right		Right attribute of the preceding word/clause
+     * @param left		Left attribute of the following word/clause
+     * @return			{@code true} if there are connectable; {@code false} if otherwise
+     */
+    private boolean connectible(int right, int left) {
+        byte[][] matrix = mConnectMatrix;
+        if (left < 0 || left >= matrix.length || matrix[left] == null
+            || right < 0 || right >= matrix[left].length) {
+            return false;
         }
-        return fzks;
+        return (matrix[left][right] != 0);
     }
 
     /**
@@ -540,4 +833,57 @@ public class OpenWnnClauseConverterJAJP {
     private WnnClause defaultClause(String input) {
         return (new WnnClause(input, input, mPosDefault, (CLAUSE_COST - 1) * input.length()));
     }
+
+    /**
+     * The iterator of the candidates of single clause conversion.
+     * <br>
+     * The best {@code CANDIDATE_TOP_K} clauses are already sorted, and the
+     * rest are taken from the heap when the iteration goes past them.  The
+     * iterator becomes empty when the next conversion starts.
+     */
+    private class ClauseIterator implements Iterator<WnnClause> {
+        /** The input string */
+        private String mInput;
+        /** The number of the clauses already returned */
+        private int mPosition;
+        /** The generation of the work area */
+        private int mGeneration;
+
+        /**
+         * Reset the iterator.
+         *
+         * @param input		The input string
+         */
+        public void reset(String input) {
+            mInput = input;
+            mPosition = 0;
+            mGeneration = mClauseGeneration;
+        }
+
+        /** @see java.util.Iterator#hasNext */
+        public boolean hasNext() {
+            return (mGeneration == mClauseGeneration)
+                && (mPosition < mClauseTopCount || mClauseHeapCount > 0);
+        }
+
+        /** @see java.util.Iterator#next */
+        public WnnClause next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int c;
+            if (mPosition < mClauseTopCount) {
+                c = mClauseOrder[mPosition];
+            } else {
+                c = pollClause();
+            }
+            mPosition++;
+            return createClause(mInput, mClauseStem[c], mClauseSplit[c], mClauseFzkRight[c]);
+        }
+
+        /** @see java.util.Iterator#remove */
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
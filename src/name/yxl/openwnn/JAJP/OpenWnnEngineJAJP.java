@@ -19,19 +19,21 @@ package name.yxl.openwnn.JAJP;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Arrays;
 
+import name.yxl.openwnn.CancellationSignal;
 import name.yxl.openwnn.CandidateFilter;
 import name.yxl.openwnn.ComposingText;
 import name.yxl.openwnn.OpenWnn;
 import name.yxl.openwnn.OpenWnnDictionaryImpl;
+import name.yxl.openwnn.PrefixCompletionTable;
 import name.yxl.openwnn.StrSegmentClause;
 import name.yxl.openwnn.WnnClause;
 import name.yxl.openwnn.WnnDictionary;
 import name.yxl.openwnn.WnnEngine;
 import name.yxl.openwnn.WnnSentence;
 import name.yxl.openwnn.WnnWord;
+import name.yxl.openwnn.WnnWordPool;
 
 import android.content.SharedPreferences;
 import android.util.Log;
@@ -79,6 +81,12 @@ public class OpenWnnEngineJAJP implements WnnEngine {
     public static final int MAX_OUTPUT_LENGTH = 50;
     /** Limitation of predicted candidates */
     public static final int PREDICT_LIMIT = 100;
+    /** Number of the completions held for a short prefix */
+    public static final int PREFIX_COMPLETION_LIMIT = 64;
+    /** Number of the short prefixes held in the completion table */
+    public static final int PREFIX_COMPLETION_CAPACITY = 128;
+    /** Number of the words held in the pool for the candidates */
+    public static final int WORD_POOL_CAPACITY = 256;
    
     /** OpenWnn dictionary */
     private WnnDictionary mDictionaryJP;
@@ -100,7 +108,8 @@ public class OpenWnnEngineJAJP implements WnnEngine {
     
     /**
      * Where to get the next candidates from.<br>
-     * (0:prefix search from the dictionary, 1:single clause converter, 2:Kana converter)
+     * (0:prefix search from the dictionary, 1:single clause converter, 2:Kana converter,
+     *  3:Kana converter (generating), 4:no more candidate)
      */
     private int mGetCandidateFrom;
     
@@ -110,6 +119,9 @@ public class OpenWnnEngineJAJP implements WnnEngine {
     /** Converter for single/consecutive clause conversion */
     private OpenWnnClauseConverterJAJP mClauseConverter;
 
+    /** Candidates of single clause conversion (not taken yet) */
+    private Iterator<?> mClauseCandidates;
+
     /** Kana converter (for EISU-KANA conversion) */
     private KanaConverter mKanaConverter;
 
@@ -125,6 +137,21 @@ public class OpenWnnEngineJAJP implements WnnEngine {
     /** The candidate filter */
     private CandidateFilter mFilter = null;
 
+    /** The table of the top completions of short prefixes */
+    private PrefixCompletionTable mPrefixTable;
+
+    /** The completions of the current prefix ({@code null} if searching the dictionaries) */
+    private PrefixCompletionTable.Entry mPrefixEntry;
+
+    /** Index of the next word in {@code mPrefixEntry} */
+    private int mPrefixIndex;
+
+    /** The pool of the words searched from the dictionary */
+    private WnnWordPool mWordPool;
+
+    /** The signal to stop the search ({@code null} if not cancellable) */
+    private CancellationSignal mCancellation = null;
+
     /**
      * Constructor
      * 
@@ -132,9 +159,12 @@ public class OpenWnnEngineJAJP implements WnnEngine {
      */
     public OpenWnnEngineJAJP(String writableDictionaryName) {
         /* load Japanese dictionary library */
-        mDictionaryJP = new OpenWnnDictionaryImpl(
+        OpenWnnDictionaryImpl dictionary = new OpenWnnDictionaryImpl(
                 "/data/data/name.yxl.openwnn/lib/libname_yxl_libWnnJpnDic.so",
                 writableDictionaryName );
+        mWordPool = new WnnWordPool(WORD_POOL_CAPACITY);
+        dictionary.setWordPool(mWordPool);
+        mDictionaryJP = dictionary;
 
         /* clear dictionary settings */
         mDictionaryJP.clearDictionary();
@@ -144,6 +174,8 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         /* work buffers */
         mConvResult = new ArrayList<WnnWord>();
         mCandTable = new HashMap<String, WnnWord>();
+        mPrefixTable = new PrefixCompletionTable(PREFIX_COMPLETION_LIMIT, PREFIX_COMPLETION_CAPACITY);
+        dictionary.setEvictionListener(mPrefixTable);
 
         /* converters */
         mClauseConverter = new OpenWnnClauseConverterJAJP();
@@ -204,16 +236,21 @@ public class OpenWnnEngineJAJP implements WnnEngine {
                 if (mConvResult.size() < PREDICT_LIMIT) {
                     /* get prefix matching words from the dictionaries */
                     while (index >= mConvResult.size()) {
-                        if ((word = mDictionaryJP.getNextWord()) == null) {
+                        if (isCancelled()) {
+                            /* the candidates got so far are discarded */
+                            return null;
+                        }
+                        if ((word = getNextPrefixWord()) == null) {
                             mGetCandidateFrom = 1;
                             break;
                         }
-                        if (!mExactMatchMode || mInputHiragana.equals(word.stroke)) {
-                            addCandidate(word);
-                            if (mConvResult.size() >= PREDICT_LIMIT) {
-                                mGetCandidateFrom = 1;
-                                break;
-                            }
+                        if ((mExactMatchMode && !mInputHiragana.equals(word.stroke))
+                            || !addCandidate(word)) {
+                            /* no one refers to the word dropped */
+                            mWordPool.recycle(word);
+                        } else if (mConvResult.size() >= PREDICT_LIMIT) {
+                            mGetCandidateFrom = 1;
+                            break;
                         }
                     }
                 } else {
@@ -224,28 +261,38 @@ public class OpenWnnEngineJAJP implements WnnEngine {
 
         /* get candidates by single clause conversion */
         if (mGetCandidateFrom == 1) {
-            Iterator<?> convResult = mClauseConverter.convert(mInputHiragana);
+            if (mClauseCandidates == null) {
+                mClauseCandidates = mClauseConverter.convert(mInputHiragana);
+            }
+            /* take the candidates only as many as required */
+            Iterator<?> convResult = mClauseCandidates;
             if (convResult != null) {
-                while (convResult.hasNext()) {
+                while (index >= mConvResult.size() && convResult.hasNext()) {
                     addCandidate((WnnWord)convResult.next());
                 }
             }
-            /* end of candidates by single clause conversion */
-            mGetCandidateFrom = 2;
+            if (convResult == null || !convResult.hasNext()) {
+                /* end of candidates by single clause conversion */
+                mClauseCandidates = null;
+                mGetCandidateFrom = 2;
+            }
         }
         
         /* get candidates from Kana converter */
         if (mGetCandidateFrom == 2) {
-            List<WnnWord> addCandidateList
-            = mKanaConverter.createPseudoCandidateList(mInputHiragana, mInputRomaji, mKeyboardType);
-            
-            Iterator<WnnWord> it = addCandidateList.iterator();
-            while(it.hasNext()) {
-                addCandidate(it.next());
-            }
-
+            mKanaConverter.startPseudoCandidates(mInputHiragana, mInputRomaji, mKeyboardType);
             mGetCandidateFrom = 3;
         }
+        if (mGetCandidateFrom == 3) {
+            /* take the pseudo candidates only as many as required */
+            while (index >= mConvResult.size()) {
+                if ((word = mKanaConverter.getNextPseudoCandidate()) == null) {
+                    mGetCandidateFrom = 4;
+                    break;
+                }
+                addCandidate(word);
+            }
+        }
 
         if (index >= mConvResult.size()) {
             return null;
@@ -253,6 +300,40 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         return (WnnWord)mConvResult.get(index);
     }
 
+    /**
+     * Whether the search is cancelled or not.
+     *
+     * @return      {@code true} if cancelled; {@code false} if otherwise.
+     */
+    private boolean isCancelled() {
+        return (mCancellation != null) && mCancellation.isCancelled();
+    }
+
+    /**
+     * Get the next word of the prefix search.
+     * <br>
+     * The word is taken from the completion table if the prefix is in it;
+     * after the completions in the table run out, the rest are searched from
+     * the dictionaries (the words already taken are dropped as duplicates).
+     *
+     * @return          The word; {@code null} if there is no more word.
+     */
+    private WnnWord getNextPrefixWord() {
+        PrefixCompletionTable.Entry entry = mPrefixEntry;
+        if (entry != null) {
+            if (mPrefixIndex < entry.words.size()) {
+                return mWordPool.obtain(entry.words.get(mPrefixIndex++));
+            }
+            mPrefixEntry = null;
+            if (entry.complete) {
+                return null;
+            }
+            mDictionaryJP.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY,
+                                     mInputHiragana);
+        }
+        return mDictionaryJP.getNextWord();
+    }
+
     /**
      * Add a candidate to the conversion result buffer.
      * <br>
@@ -287,6 +368,9 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         mInputRomaji = null;
         mGetCandidateFrom = 0;
         mSingleClauseMode = false;
+        mClauseCandidates = null;
+        mPrefixEntry = null;
+        mPrefixIndex = 0;
     }
 
     /**
@@ -341,6 +425,10 @@ public class OpenWnnEngineJAJP implements WnnEngine {
      * @param keyboardType      Type of keyboard
      */
     public void setKeyboardType(int keyboardType) {
+        if (mKeyboardType != keyboardType) {
+            /* the approximate pattern depends on the keyboard */
+            mPrefixTable.clear();
+        }
         mKeyboardType = keyboardType;
     }
 
@@ -353,6 +441,19 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         mFilter = filter;
         mClauseConverter.setFilter(filter);
     }
+
+    /**
+     * Set the signal to stop the search.
+     * <br>
+     * The search of the candidates stops when it is cancelled, and the
+     * candidates got from it must be discarded.
+     *
+     * @param signal    The signal ({@code null} if not cancellable)
+     */
+    public void setCancellationSignal(CancellationSignal signal) {
+        mCancellation = signal;
+        mClauseConverter.setCancellationSignal(signal);
+    }
     
     /***********************************************************************
      * WnnEngine's interface
@@ -385,11 +486,23 @@ public class OpenWnnEngineJAJP implements WnnEngine {
             /* search by previously selected word */
             return mDictionaryJP.searchWord(WnnDictionary.SEARCH_LINK, WnnDictionary.ORDER_BY_FREQUENCY,
                                             mInputHiragana, mPreviousWord);
+        } else if (len > OpenWnnDictionaryImpl.MAX_STROKE_LENGTH) {
+            /* no word in the dictionaries is longer than the limit */
+            mGetCandidateFrom = 2;
+            return 1;
         } else {
             if (mExactMatchMode) {
                 /* exact matching */
                 mDictionaryJP.searchWord(WnnDictionary.SEARCH_EXACT, WnnDictionary.ORDER_BY_FREQUENCY,
                                          mInputHiragana);
+            } else if (mDictType != DIC_LANG_JP_EISUKANA && PrefixCompletionTable.isTarget(mInputHiragana)) {
+                /* prefix matching by the completion table */
+                mPrefixEntry = mPrefixTable.get(mInputHiragana);
+                if (mPrefixEntry == null) {
+                    mDictionaryJP.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY,
+                                             mInputHiragana);
+                    mPrefixEntry = mPrefixTable.build(mInputHiragana, mDictionaryJP);
+                }
             } else {
                 /* prefix matching */
                 mDictionaryJP.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY,
@@ -482,6 +595,20 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         return word;
     }
 
+    /** @see name.yxl.openwnn.WnnEngine#getCandidates */
+    public int getCandidates(int offset, int count, WnnWord[] out) {
+        if (mInputHiragana == null) {
+            return 0;
+        }
+        int n = 0;
+        WnnWord word;
+        while (n < count && (word = getCandidate(offset + n)) != null) {
+            out[n++] = word;
+        }
+        mOutputNum = offset + n;
+        return n;
+    }
+
     /** @see name.yxl.openwnn.WnnEngine#learn */
     public boolean learn(WnnWord word) {
         int ret = -1;
@@ -503,6 +630,7 @@ public class OpenWnnEngineJAJP implements WnnEngine {
                 if (ret != 0) {
                     break;
                 }
+                mPrefixTable.learn(wd, FREQ_LEARN);
             }
         } else {
             if (mPreviousWord != null) {
@@ -511,6 +639,9 @@ public class OpenWnnEngineJAJP implements WnnEngine {
                 ret = dict.learnWord(word);
             }
             mPreviousWord = word;
+            if (ret == 0) {
+                mPrefixTable.learn(word, FREQ_LEARN);
+            }
             mClauseConverter.setDictionary(dict);
         }
 
@@ -525,6 +656,7 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         }
         mDictionaryJP.addWordToUserDictionary(word);
         mDictionaryJP.setInUseState( false );
+        mPrefixTable.clear();
         return 0;
     }
 
@@ -533,6 +665,7 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         mDictionaryJP.setInUseState( true );
         mDictionaryJP.removeWordFromUserDictionary(word);
         mDictionaryJP.setInUseState( false );
+        mPrefixTable.clear();
         return false;
     }
 
@@ -561,6 +694,7 @@ public class OpenWnnEngineJAJP implements WnnEngine {
 
     /** @see name.yxl.openwnn.WnnEngine#initializeDictionary */
     public boolean initializeDictionary(int dictionary)  {
+        mPrefixTable.clear();
         switch( dictionary ) {
         case WnnEngine.DICTIONARY_TYPE_LEARN:
             mDictionaryJP.setInUseState( true );
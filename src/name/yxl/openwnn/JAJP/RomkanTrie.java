@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn.JAJP;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import name.yxl.openwnn.ComposingText;
+import name.yxl.openwnn.StrSegment;
+
+/**
+ * The compiled table of Romaji-to-Kana conversion.
+ * <br>
+ * The Romaji strings of the table are compiled into a trie of the
+ * reversed strings.  The conversion feeds the characters before the
+ * cursor to the trie one by one (from the cursor to the head), so that
+ * the longest Romaji string which ends at the cursor is found without
+ * building any string or looking up any hash table.  The strings of the
+ * output are also prepared when the table is compiled.
+ * <p>
+ * The nodes are laid out in the breadth-first order; the children of the
+ * node {@code i} are {@code [mFirstChild[i], mFirstChild[i + 1])}, sorted
+ * by the label.
+ * </p>
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class RomkanTrie {
+    /** Max number of the segments of a Romaji string */
+    public static final int MAX_LENGTH = 4;
+
+    /** The label (lower case) of each node */
+    private final char[] mLabel;
+    /** The first child of each node (and the number of the nodes at the end) */
+    private final int[] mFirstChild;
+    /** The output of each node ({@code null} if the node is not the end of a Romaji string) */
+    private final String[] mOutput;
+    /** The output in upper case */
+    private final String[] mUpperOutput;
+    /** The output except the last character ({@code null} if the output is a character) */
+    private final String[] mHead;
+    /** The output except the last character in upper case */
+    private final String[] mUpperHead;
+    /** The last character of the output ({@code null} if the output is a character) */
+    private final String[] mTail;
+    /** The last character of the output in upper case */
+    private final String[] mUpperTail;
+
+    /** Work area for the output of a segment */
+    private final StrSegment[] mOut1 = new StrSegment[1];
+    /** Work area for the output of two segments */
+    private final StrSegment[] mOut2 = new StrSegment[2];
+
+    /**
+     * The node of the trie under construction.
+     */
+    private static class Node {
+        /** The children */
+        TreeMap<Character, Node> children = new TreeMap<Character, Node>();
+        /** The output */
+        String output;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param table     The table of Romaji-to-Kana conversion (pairs of Romaji (lower case) and Kana)
+     */
+    public RomkanTrie(String[] table) {
+        this(table, -1, null);
+    }
+
+    /**
+     * Constructor
+     * <br>
+     * The Kana of the table is projected to a script of Katakana by
+     * {@link KanaTable#projectRomkan}; the pairs which cannot be projected
+     * are dropped.
+     *
+     * @param table     The table of Romaji-to-Kana conversion (pairs of Romaji (lower case) and Hiragana)
+     * @param script    The script ({@code KanaTable.FULL_KATAKANA} or {@code KanaTable.HALF_KATAKANA}; -1 if not projected)
+     * @param extra     The pairs of Romaji and Kana added after projection ({@code null} if none)
+     */
+    public RomkanTrie(String[] table, int script, String[] extra) {
+        /* make the trie of the reversed Romaji strings */
+        Node root = new Node();
+        for (int i = 0; i + 1 < table.length; i += 2) {
+            String output = table[i + 1];
+            if (script >= 0) {
+                output = KanaTable.projectRomkan(output, script);
+                if (output == null) {
+                    continue;
+                }
+            }
+            add(root, table[i], output);
+        }
+        if (extra != null) {
+            for (int i = 0; i + 1 < extra.length; i += 2) {
+                add(root, extra[i], extra[i + 1]);
+            }
+        }
+
+        /* lay out the nodes in the breadth-first order */
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        ArrayList<Character> labels = new ArrayList<Character>();
+        nodes.add(root);
+        labels.add(Character.valueOf('\u0000'));
+        for (int i = 0; i < nodes.size(); i++) {
+            Iterator<Map.Entry<Character, Node>> children = nodes.get(i).children.entrySet().iterator();
+            while (children.hasNext()) {
+                Map.Entry<Character, Node> child = children.next();
+                labels.add(child.getKey());
+                nodes.add(child.getValue());
+            }
+        }
+
+        int size = nodes.size();
+        mLabel = new char[size];
+        mFirstChild = new int[size + 1];
+        mOutput = new String[size];
+        mUpperOutput = new String[size];
+        mHead = new String[size];
+        mUpperHead = new String[size];
+        mTail = new String[size];
+        mUpperTail = new String[size];
+        int next = 1;
+        for (int i = 0; i < size; i++) {
+            Node node = nodes.get(i);
+            mLabel[i] = labels.get(i).charValue();
+            mFirstChild[i] = next;
+            next += node.children.size();
+
+            String output = node.output;
+            if (output != null) {
+                String upper = output.toUpperCase();
+                mOutput[i] = output;
+                mUpperOutput[i] = upper;
+                if (output.length() > 1) {
+                    mHead[i] = output.substring(0, output.length() - 1);
+                    mTail[i] = output.substring(output.length() - 1);
+                    mUpperHead[i] = upper.substring(0, upper.length() - 1);
+                    mUpperTail[i] = upper.substring(upper.length() - 1);
+                }
+            }
+        }
+        mFirstChild[size] = next;
+    }
+
+    /**
+     * Add a Romaji string to the trie under construction.
+     *
+     * @param root      The root of the trie
+     * @param key       The Romaji string (lower case)
+     * @param output    The Kana
+     */
+    private static void add(Node root, String key, String output) {
+        Node node = root;
+        for (int i = key.length() - 1; i >= 0; i--) {
+            Character c = Character.valueOf(key.charAt(i));
+            Node child = node.children.get(c);
+            if (child == null) {
+                child = new Node();
+                node.children.put(c, child);
+            }
+            node = child;
+        }
+        node.output = output;
+    }
+
+    /**
+     * Convert the Romaji string before the cursor of the layer 1.
+     * <br>
+     * The longest Romaji string in the table which consists of the
+     * segments before the cursor is replaced with the Kana.  If the output
+     * has two or more characters, the last character is left as a new
+     * segment (e.g. "kk" to small "tsu" and "k").  The output is in upper
+     * case if the last character of the input is in upper case.
+     * <br>
+     * This method uses the work areas of the table, so it must be called
+     * on the UI thread only, where the letter converters run.
+     *
+     * @param text      The input/output text
+     * @return          {@code true} if converted; {@code false} if not.
+     */
+    public boolean convert(ComposingText text) {
+        int cursor = text.getCursor(ComposingText.LAYER1);
+        if (cursor <= 0) {
+            return false;
+        }
+
+        StrSegment last = text.getStrSegment(ComposingText.LAYER1, cursor - 1);
+        String str = last.string;
+        boolean upper = (str.length() > 0 && Character.isUpperCase(str.charAt(str.length() - 1)));
+
+        /* feed the characters from the cursor to the trie */
+        int checkLength = Math.min(cursor, MAX_LENGTH);
+        int node = 0;
+        int match = -1;
+        int matchLength = 0;
+        StrSegment first = null;
+        search:
+        for (int i = 1; i <= checkLength; i++) {
+            StrSegment seg = text.getStrSegment(ComposingText.LAYER1, cursor - i);
+            str = seg.string;
+            for (int j = str.length() - 1; j >= 0; j--) {
+                node = findChild(node, Character.toLowerCase(str.charAt(j)));
+                if (node < 0) {
+                    break search;
+                }
+            }
+            if (mOutput[node] != null) {
+                match = node;
+                matchLength = i;
+                first = seg;
+            }
+        }
+        if (match < 0) {
+            return false;
+        }
+
+        StrSegment[] out;
+        if (mHead[match] == null) {
+            out = mOut1;
+            out[0] = text.obtainStrSegment(upper ? mUpperOutput[match] : mOutput[match], first.from, last.to);
+        } else {
+            out = mOut2;
+            out[0] = text.obtainStrSegment(upper ? mUpperHead[match] : mHead[match], first.from, last.to - 1);
+            out[1] = text.obtainStrSegment(upper ? mUpperTail[match] : mTail[match], last.to, last.to);
+        }
+        text.replaceStrSegment(ComposingText.LAYER1, out, matchLength);
+        out[0] = null;
+        if (out.length > 1) {
+            out[1] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Find the child of a node.
+     *
+     * @param node      The node
+     * @param c         The label of the child
+     * @return          The child; -1 if not found.
+     */
+    private int findChild(int node, char c) {
+        int low = mFirstChild[node];
+        int high = mFirstChild[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = mLabel[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
@@ -49,8 +49,14 @@ public class OpenWnn extends InputMethodService {
     protected LetterConverter  mPreConverter = null;
     /** The inputing/editing string */
     protected ComposingText  mComposingText = null;
+    /** The renderer of the composing text on the editor */
+    protected ComposingRenderer  mComposingRenderer = null;
     /** The input connection */
     protected InputConnection mInputConnection = null;
+    /** The input connection which batches the edits of an event */
+    protected final BatchInputConnection mBatchConnection = new BatchInputConnection();
+    /** The queue of the events applied on the UI thread */
+    protected final EventQueue mEventQueue = new EventQueue(this);
     /** Auto hide candidate view */
     protected boolean mAutoHideMode = true;
     /** Direct input mode */
@@ -59,6 +65,13 @@ public class OpenWnn extends InputMethodService {
     /** Flag for checking if the previous down key event is consumed by OpenWnn  */
     private boolean mConsumeDownEvent;
 
+    /** The event reused for the key events */
+    private final OpenWnnEvent mKeyEventWork = new OpenWnnEvent(OpenWnnEvent.UNDEFINED);
+    /** Whether {@code mKeyEventWork} is being processed */
+    private boolean mKeyEventWorkInUse = false;
+    /** The depth of the events being processed */
+    private int mEventDepth = 0;
+
     /**
      * Constructor
      */
@@ -76,7 +89,7 @@ public class OpenWnn extends InputMethodService {
         SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(this);
 
 
-        if (mConverter != null) { mConverter.init(); }
+        initConverter();
         if (mComposingText != null) { mComposingText.clear(); }
     }
 
@@ -118,7 +131,7 @@ public class OpenWnn extends InputMethodService {
 
     /** @see android.inputmethodservice.InputMethodService#onKeyDown */
     @Override public boolean onKeyDown(int keyCode, KeyEvent event) {
-        mConsumeDownEvent = onEvent(new OpenWnnEvent(event));
+        mConsumeDownEvent = onKeyEvent(event);
         if (!mConsumeDownEvent) {
             return super.onKeyDown(keyCode, event);
         }
@@ -131,29 +144,55 @@ public class OpenWnn extends InputMethodService {
         if (!ret) {
             ret = super.onKeyUp(keyCode, event);
         }else{
-            onEvent(new OpenWnnEvent(event));
+            onKeyEvent(event);
         }
         return ret;
     }
+
+    /**
+     * Process a key event.
+     * <br>
+     * The {@link OpenWnnEvent} is reused for every key, so that no event
+     * is allocated while typing.  A new event is made only if a key event
+     * is processed while another one is being processed.
+     *
+     * @param event     The key event
+     * @return          The result of {@link #onEvent}
+     */
+    private boolean onKeyEvent(KeyEvent event) {
+        if (mKeyEventWorkInUse) {
+            return onEvent(new OpenWnnEvent(event));
+        }
+        mKeyEventWorkInUse = true;
+        try {
+            return onEvent(mKeyEventWork.setKeyEvent(event));
+        } finally {
+            mKeyEventWork.keyEvent = null;
+            mKeyEventWorkInUse = false;
+        }
+    }
         
     /** @see android.inputmethodservice.InputMethodService#onStartInput */
     @Override public void onStartInput(EditorInfo attribute, boolean restarting) {
         super.onStartInput(attribute, restarting);
-        mInputConnection = getCurrentInputConnection();
+        mInputConnection = mBatchConnection.attach(super.getCurrentInputConnection());
         if (!restarting && mComposingText != null) {
             mComposingText.clear();
         }
+        if (mComposingRenderer != null) {
+            mComposingRenderer.invalidate();
+        }
     }
 
     /** @see android.inputmethodservice.InputMethodService#onStartInputView */
     @Override public void onStartInputView(EditorInfo attribute, boolean restarting) {
         super.onStartInputView(attribute, restarting);
-        mInputConnection = getCurrentInputConnection();
+        mInputConnection = mBatchConnection.attach(super.getCurrentInputConnection());
 
         setCandidatesViewShown(false);
         if (mInputConnection != null) {
             mDirectInputMode = false;
-            if (mConverter != null) { mConverter.init(); }
+            initConverter();
         } else {
             mDirectInputMode = true;
         }
@@ -164,6 +203,19 @@ public class OpenWnn extends InputMethodService {
         if (mConverter != null) { mConverter.setPreferences(pref);  }
     }
 
+    /**
+     * Get the input connection of the editor.
+     * <br>
+     * The edits through the returned connection are batched with the
+     * edits of {@link #mInputConnection}.
+     *
+     * @see android.inputmethodservice.InputMethodService#getCurrentInputConnection
+     */
+    @Override public InputConnection getCurrentInputConnection() {
+        InputConnection ic = super.getCurrentInputConnection();
+        return mBatchConnection.isAttached(ic) ? mBatchConnection : ic;
+    }
+
     /** @see android.inputmethodservice.InputMethodService#requestHideSelf */
     @Override public void requestHideSelf(int flag) {
         super.requestHideSelf(flag);
@@ -202,14 +254,71 @@ public class OpenWnn extends InputMethodService {
      **********************************************************************/
     /**
      * Process an event.
+     * <br>
+     * On the UI thread, the events posted to {@link #mEventQueue} are
+     * applied first, and then the event is processed.  On the other
+     * threads, the event is posted to {@link #mEventQueue} and processed
+     * later on the UI thread.
      *
      * @param  ev  An event
-     * @return  {@code true} if the event is processed in this method; {@code false} if not.
+     * @return  {@code true} if the event is processed in this method (or posted); {@code false} if not.
      */
     public boolean onEvent(OpenWnnEvent ev) {
+        if (!mEventQueue.isMainThread()) {
+            mEventQueue.post(ev);
+            return true;
+        }
+        if (mEventDepth == 0) {
+            mEventQueue.drain();
+        }
+        if (ev.keyEvent != null && Log.isLoggable("OpenWnn", Log.DEBUG)) {
+            Log.d("OpenWnn", "OpenWnn: key latency="
+                  + (SystemClock.uptimeMillis() - ev.keyEvent.getEventTime()) + "ms");
+        }
+        return dispatchEvent(ev);
+    }
+
+    /**
+     * Process an event on the UI thread.
+     * <br>
+     * The edits of the editor made while processing the event are sent
+     * in one batch.
+     *
+     * @param  ev  An event
+     * @return  {@code true} if the event is processed; {@code false} if not.
+     */
+    boolean dispatchEvent(OpenWnnEvent ev) {
+        mEventDepth++;
+        mBatchConnection.begin();
+        try {
+            return processEvent(ev);
+        } finally {
+            mBatchConnection.end();
+            mEventDepth--;
+        }
+    }
+
+    /**
+     * Process an event (implemented by the IME).
+     * <br>
+     * This method is called only on the UI thread.
+     *
+     * @param  ev  An event
+     * @return  {@code true} if the event is processed in this method; {@code false} if not.
+     */
+    protected boolean processEvent(OpenWnnEvent ev) {
         return false;
     }
 
+    /**
+     * Initialize the conversion engine.
+     * <br>
+     * This method is called only on the UI thread.
+     */
+    protected void initConverter() {
+        if (mConverter != null) { mConverter.init(); }
+    }
+
     /**
      * Search a character for toggle input.
      *
@@ -24,6 +24,10 @@ import android.database.sqlite.SQLiteDatabase;
 
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
 /**
  * The implementation class of WnnDictionary interface (JNI wrapper class).
  *
@@ -177,6 +181,37 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     /** The Frequency offset of learn dictionary */
     protected int mFrequencyOffsetOfLearnDictionary = -1;
 
+    /**
+     * The index of the learning dictionary for link search
+     * (the key is made by {@code createLinkKey()}; the followers are sorted from the latest).
+     * <br>
+     * {@code null} if it is not loaded.
+     */
+    protected HashMap<String, ArrayList<WnnWord>> mLinkIndex = null;
+    /** The result of link search from the index ({@code null} if not used) */
+    protected ArrayList<WnnWord> mLinkResult = null;
+    /** The position of the next word in the result of link search */
+    protected int mLinkResultIndex = 0;
+
+    /** The pool of the words returned by {@code getNextWord()} ({@code null} if not used) */
+    protected WnnWordPool mWordPool = null;
+
+    /**
+     * The listener of the words evicted from the learning dictionary.
+     */
+    public interface EvictionListener {
+        /**
+         * Called when a word is evicted from the learning dictionary to make room for a new word.
+         *
+         * @param stroke        The stroke of the word
+         * @param candidate     The candidate of the word
+         */
+        public void onEvicted( String stroke, String candidate );
+    }
+
+    /** The listener of the words evicted from the learning dictionary ({@code null} if not used) */
+    protected EvictionListener mEvictionListener = null;
+
     /*
      * DEFINITION OF METHODS
      */
@@ -270,6 +305,9 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
 
                 /* Create the table if not exist */
                 createDictionaryTable( TABLE_NAME_DIC );
+
+                /* Load the index for link search */
+                loadLinkIndex( );
             } catch( SQLException e ) {
             }
         }
@@ -312,6 +350,110 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
         }
     }
 
+    /**
+     * Create the key of the index for link search.
+     *
+     * @param stroke        The stroke of the previous word
+     * @param candidate     The candidate of the previous word
+     * @return              The key
+     */
+    protected static String createLinkKey( String stroke, String candidate ) {
+        return stroke + '\u0000' + candidate;
+    }
+
+    /**
+     * Load the index for link search from the learning dictionary.
+     * <br>
+     * If loading fails, the index is left unloaded and link search queries the database.
+     */
+    protected void loadLinkIndex( ) {
+        if( mDbDic == null ) {
+            return;
+        }
+
+        HashMap<String, ArrayList<WnnWord>> index = new HashMap<String, ArrayList<WnnWord>>();
+        SQLiteCursor cursor = null;
+        try {
+            /* Retrieve the words learned with the previous word ascending by the ID */
+            cursor = ( SQLiteCursor )mDbDic.query(
+                TABLE_NAME_DIC,
+                new String[] { COLUMN_NAME_STROKE, COLUMN_NAME_CANDIDATE,
+                               COLUMN_NAME_POS_LEFT, COLUMN_NAME_POS_RIGHT,
+                               COLUMN_NAME_PREVIOUS_STROKE, COLUMN_NAME_PREVIOUS_CANDIDATE },
+                String.format( "%s=%d and %s is not null and %s is not null",
+                               COLUMN_NAME_TYPE, TYPE_NAME_LEARN,
+                               COLUMN_NAME_PREVIOUS_STROKE, COLUMN_NAME_PREVIOUS_CANDIDATE ),
+                null, null, null,
+                String.format( "%s ASC", COLUMN_NAME_ID ) );
+
+            boolean exist = cursor.moveToFirst( );
+            while( exist ) {
+                WnnWord word = new WnnWord( 0, cursor.getString( 1 ), cursor.getString( 0 ),
+                                            new WnnPOS( cursor.getInt( 2 ), cursor.getInt( 3 ) ), 0 );
+                addLink( index, createLinkKey( cursor.getString( 4 ), cursor.getString( 5 ) ), word );
+                exist = cursor.moveToNext( );
+            }
+        } catch( SQLException e ) {
+            Log.e( "OpenWnn", "OpenWnnDictionaryImpl:loadLinkIndex " + e.toString() );
+            return;
+        } finally {
+            if( cursor != null ) {
+                cursor.close( );
+            }
+        }
+        mLinkIndex = index;
+    }
+
+    /**
+     * Add a link to the index for link search.
+     * <br>
+     * The word is moved to the top of the followers of the previous word.
+     *
+     * @param index     The index
+     * @param key       The key of the previous word
+     * @param word      The following word
+     */
+    protected static void addLink( HashMap<String, ArrayList<WnnWord>> index, String key, WnnWord word ) {
+        ArrayList<WnnWord> followers = index.get( key );
+        if( followers == null ) {
+            followers = new ArrayList<WnnWord>( );
+            index.put( key, followers );
+        } else {
+            for( int i = 0 ; i < followers.size( ) ; i++ ) {
+                WnnWord w = followers.get( i );
+                if( w.stroke.equals( word.stroke ) && w.candidate.equals( word.candidate ) &&
+                    w.partOfSpeech.left == word.partOfSpeech.left &&
+                    w.partOfSpeech.right == word.partOfSpeech.right ) {
+                    followers.remove( i );
+                    break;
+                }
+            }
+        }
+        followers.add( 0, word );
+    }
+
+    /**
+     * Remove a word from the followers in the index for link search.
+     *
+     * @param stroke        The stroke of the word
+     * @param candidate     The candidate of the word
+     */
+    protected void removeLinks( String stroke, String candidate ) {
+        Iterator<ArrayList<WnnWord>> it = mLinkIndex.values( ).iterator( );
+        while( it.hasNext( ) ) {
+            ArrayList<WnnWord> followers = it.next( );
+            for( int i = followers.size( ) - 1 ; i >= 0 ; i-- ) {
+                WnnWord w = followers.get( i );
+                if( w.stroke.equals( stroke ) && w.candidate.equals( candidate ) ) {
+                    followers.remove( i );
+                }
+            }
+            if( followers.isEmpty( ) ) {
+                it.remove( );
+            }
+        }
+    }
+
     /**
      * Free the {@link SQLiteDatabase} of writable dictionary.
      */
@@ -531,6 +673,7 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     public int searchWord( int operation, int order, String keyString ) {
         /* Unset the previous word information */
         OpenWnnDictionaryImplJni.clearResult( this.mWnnWork );
+        mLinkResult = null;
 
         /* Search to user/learn dictionary */
         if( mDbDic != null && ( mFrequencyOffsetOfUserDictionary  >= 0 ||
@@ -578,9 +721,25 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
             return -1;
         }
 
+        mLinkResult = null;
+        if( mDbDic != null && mLinkIndex == null ) {
+            loadLinkIndex( );
+        }
+
         /* Search to user/learn dictionary with link information */
-        if( mDbDic != null && ( mFrequencyOffsetOfUserDictionary  >= 0 ||
-                                mFrequencyOffsetOfLearnDictionary >= 0 ) ) {
+        if( mDbDic != null && mLinkIndex != null && operation == WnnDictionary.SEARCH_LINK &&
+            keyString.length() == 0 && order == WnnDictionary.ORDER_BY_FREQUENCY ) {
+            /* Only the learning dictionary has links, and the empty key matches all of them */
+            if( mDbCursor != null ) {
+                mDbCursor.deactivate();
+            }
+            mCountCursor = 0;
+            if( mFrequencyOffsetOfLearnDictionary >= 0 ) {
+                mLinkResult = mLinkIndex.get( createLinkKey( wnnWord.stroke, wnnWord.candidate ) );
+                mLinkResultIndex = 0;
+            }
+        } else if( mDbDic != null && ( mFrequencyOffsetOfUserDictionary  >= 0 ||
+                                       mFrequencyOffsetOfLearnDictionary >= 0 ) ) {
             try {
                 createQuery( keyString, wnnWord, operation, order );
                 if( mDbCursor != null ) {
@@ -606,7 +765,7 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
 
         if( this.mWnnWork != 0 ) {
             int ret = OpenWnnDictionaryImplJni.searchWord( this.mWnnWork, operation, order, keyString );
-            if (mCountCursor > 0) {
+            if (mCountCursor > 0 || mLinkResult != null) {
                 ret = 1;
             }
             return ret;
@@ -627,9 +786,26 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      */
     public WnnWord getNextWord( int length ) {
         if( this.mWnnWork != 0 ) {
+            if( mLinkResult != null ) {
+                /* If the index for link search is used, get the result from the index */
+                while( mLinkResultIndex < mLinkResult.size( ) ) {
+                    WnnWord link = mLinkResult.get( mLinkResultIndex++ );
+                    if( length <= 0 || link.stroke.length( ) == length ) {
+                        WnnWord result = obtainWord( );
+                        result.stroke               = link.stroke;
+                        result.candidate            = link.candidate;
+                        result.partOfSpeech.left    = link.partOfSpeech.left;
+                        result.partOfSpeech.right   = link.partOfSpeech.right;
+                        result.frequency            = mFrequencyOffsetOfLearnDictionary;
+                        return result;
+                    }
+                }
+                mLinkResult = null;
+            }
+
             if( mDbDic != null && mDbCursor != null && mCountCursor > 0 ) {
                 /* If the user/learn dictionary is queried, get the result from the user/learn dictionary */
-                WnnWord result = new WnnWord( );
+                WnnWord result = null;
                 try {
                     /* Skip results if that is not contained the type of search or length of stroke is not equal specified length */
                     while( mCountCursor > 0 &&
@@ -642,6 +818,7 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
 
                     if( mCountCursor > 0 ) {
                         /* Get the information of word */
+                        result = obtainWord( );
                         result.stroke               = mDbCursor.getString( 0 );
                         result.candidate            = mDbCursor.getString( 1 );
                         result.partOfSpeech.left    = mDbCursor.getInt( 2 );
@@ -675,7 +852,7 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
             /* Get the result from fixed dictionary */
             int res = OpenWnnDictionaryImplJni.getNextWord( this.mWnnWork, length );
             if( res > 0 ) {
-                WnnWord result = new WnnWord( );
+                WnnWord result = obtainWord( );
                 if( result != null ) {
                     result.stroke               = OpenWnnDictionaryImplJni.getStroke( this.mWnnWork );
                     result.candidate            = OpenWnnDictionaryImplJni.getCandidate( this.mWnnWork );
@@ -696,6 +873,42 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
         }
     }
 
+    /**
+     * Set the pool of the words returned by {@code getNextWord()}.
+     * <br>
+     * The caller may return the words which no one refers to into the pool,
+     * so that the words are reused on the next search.
+     *
+     * @param pool      The pool ({@code null} if not used)
+     */
+    public void setWordPool( WnnWordPool pool ) {
+        mWordPool = pool;
+    }
+
+    /**
+     * Set the listener of the words evicted from the learning dictionary.
+     * <br>
+     * The caches of the words of the learning dictionary must drop an
+     * evicted word, because the dictionary no longer returns it.
+     *
+     * @param listener  The listener ({@code null} if not used)
+     */
+    public void setEvictionListener( EvictionListener listener ) {
+        mEvictionListener = listener;
+    }
+
+    /**
+     * Get a word for the result of {@code getNextWord()}.
+     *
+     * @return      The word (taken from the pool if it is set)
+     */
+    protected WnnWord obtainWord( ) {
+        if( mWordPool != null ) {
+            return mWordPool.obtain( );
+        }
+        return new WnnWord( );
+    }
+
     /**
      * @see name.yxl.openwnn.WnnDictionary#getUserDictionaryWords
      */
@@ -832,6 +1045,10 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     public int clearLearnDictionary() {
         if( mDbDic != null ) {
             mDbDic.execSQL( String.format( "delete from %s where %s=%d", TABLE_NAME_DIC, COLUMN_NAME_TYPE, TYPE_NAME_LEARN ) );
+            if( mLinkIndex != null ) {
+                mLinkIndex.clear( );
+            }
+            mLinkResult = null;
         }
         
         /* If no writable dictionary exists, no error occurs. */
@@ -1041,6 +1258,12 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
                                            COLUMN_NAME_STROKE, oldestStrokeSQL.toString( ),
                                            COLUMN_NAME_CANDIDATE, oldestCandidateSQL.toString( ) ),
                             null );
+                        if( mLinkIndex != null ) {
+                            removeLinks( cursor.getString( 0 ), cursor.getString( 1 ) );
+                        }
+                        if( mEvictionListener != null ) {
+                            mEvictionListener.onEvicted( cursor.getString( 0 ), cursor.getString( 1 ) );
+                        }
 
                         mDbDic.setTransactionSuccessful();
                     } catch( SQLException e ) {
@@ -1079,6 +1302,13 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
                 } finally {
                     mDbDic.endTransaction();
                 }
+
+                /* Update the index for link search */
+                if( mLinkIndex != null && previousWord != null ) {
+                    addLink( mLinkIndex, createLinkKey( previousWord.stroke, previousWord.candidate ),
+                             new WnnWord( 0, word.candidate, word.stroke,
+                                          new WnnPOS( word.partOfSpeech.left, word.partOfSpeech.right ), 0 ) );
+                }
             }
         }
 
@@ -24,8 +24,6 @@ import android.content.res.Configuration;
 import android.os.Message;
 import android.os.Handler;
 import android.preference.PreferenceManager;
-import android.text.SpannableStringBuilder;
-import android.text.Spanned;
 import android.text.method.MetaKeyKeyListener;
 import android.text.style.BackgroundColorSpan;
 import android.text.style.CharacterStyle;
@@ -61,9 +59,6 @@ public class OpenWnnEN extends OpenWnn {
     /** Never move cursor in to the composing text (adapting to IMF's specification change) */
     private static final boolean FIX_CURSOR_TEXT_END = true;
 
-    /** Spannable string for the composing text */
-    protected SpannableStringBuilder mDisplayText;
-
     /** Characters treated as a separator */
     private String mWordSeparators;
     /** Previous event's code */
@@ -122,11 +117,9 @@ public class OpenWnnEN extends OpenWnn {
     /** Message for {@code mHandler} (close) */
     private static final int MSG_CLOSE = 2;
 
-    /** Delay time(msec.) to start prediction after key input when the candidates view is not shown. */
-    private static final int PREDICTION_DELAY_MS_1ST = 200;
 
-    /** Delay time(msec.) to start prediction after key input when the candidates view is shown. */
-    private static final int PREDICTION_DELAY_MS_SHOWING_CANDIDATE = 200;
+    /** Scheduler of prediction (decides the delay time after key input) */
+    private PredictionScheduler mPredictionScheduler = new PredictionScheduler();
 
     /** {@code Handler} for drawing candidates/displaying tutorial */
     Handler mHandler = new Handler() {
@@ -173,7 +166,7 @@ public class OpenWnnEN extends OpenWnn {
         mSymbolList = null;
 
         /* etc */
-        mDisplayText = new SpannableStringBuilder();
+        mComposingRenderer = new ComposingRenderer();
         mAutoHideMode = false;
         mSymbolMode = false;
         mOptPrediction = true;
@@ -218,10 +211,12 @@ public class OpenWnnEN extends OpenWnn {
             /* if the character is a separator, remove an auto-inserted space and commit the composing text. */
             if (mPreviousEventCode == OpenWnnEvent.SELECT_CANDIDATE) {
                 mInputConnection.deleteSurroundingText(1, 0);
+                mComposingRenderer.invalidate();
             }
             commitText(1);
             commitText(seg.string);
             mComposingText.clear();
+            mConverterEN.breakSequence();
         } else {
             mComposingText.insertStrSegment(0, 1, seg);
             updateComposingText(1);
@@ -324,6 +319,7 @@ public class OpenWnnEN extends OpenWnn {
         if (mComposingText != null) {
             mComposingText.clear();
         }
+        mConverterEN.breakSequence();
         /* initialize the engine's state */
         fitInputType(pref, attribute);
 
@@ -349,6 +345,7 @@ public class OpenWnnEN extends OpenWnn {
             int newSelStart, int newSelEnd, int candidatesStart,
             int candidatesEnd) {
 
+        mComposingRenderer.onUpdateSelection(newSelStart, newSelEnd, candidatesStart, candidatesEnd);
         boolean isNotComposing = ((candidatesStart < 0) && (candidatesEnd < 0));
         if (isNotComposing) {
             mComposingText.clear();
@@ -388,8 +385,8 @@ public class OpenWnnEN extends OpenWnn {
     /***********************************************************************
      * OpenWnn
      ***********************************************************************/
-    /** @see name.yxl.openwnn.OpenWnn#onEvent */
-    @Override synchronized public boolean onEvent(OpenWnnEvent ev) {
+    /** @see name.yxl.openwnn.OpenWnn#processEvent */
+    @Override protected boolean processEvent(OpenWnnEvent ev) {
         /* handling events which are valid when InputConnection is not active. */
         switch (ev.code) {
 
@@ -460,6 +457,7 @@ public class OpenWnnEN extends OpenWnn {
                 mInputConnection.sendKeyEvent(keyEvent);
                 mInputConnection.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_UP,
                                                            keyEvent.getKeyCode()));
+                mComposingRenderer.invalidate();
             }
             return false;
         }
@@ -528,6 +526,7 @@ public class OpenWnnEN extends OpenWnn {
                     mInputConnection.sendKeyEvent(keyEvent);
                     mInputConnection.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_UP, code));
             	}
+                mComposingRenderer.invalidate();
                 ret = true;
             }
             mPreviousEventCode = ev.code;
@@ -540,6 +539,7 @@ public class OpenWnnEN extends OpenWnn {
                 if (mWordSeparators.contains(ev.word.candidate) &&
                     mPreviousEventCode == OpenWnnEvent.SELECT_CANDIDATE) {
                     mInputConnection.deleteSurroundingText(1, 0);
+                    mComposingRenderer.invalidate();
                 }
                 commitText(ev.word, true);
             }
@@ -764,6 +764,7 @@ public class OpenWnnEN extends OpenWnn {
      */
     private void updatePrediction() {
         int candidates = 0;
+        mPredictionScheduler.onPredictionStart();
         if (mConverter != null) {
             /* normal prediction */
             candidates = mConverter.predict(mComposingText, 0, -1);
@@ -774,6 +775,7 @@ public class OpenWnnEN extends OpenWnn {
         } else {
             mCandidatesViewManager.clearCandidates();
         }
+        mPredictionScheduler.onPredictionEnd();
     }
 
     /**
@@ -793,13 +795,8 @@ public class OpenWnnEN extends OpenWnn {
         } else {
             if (mComposingText.size(1) != 0) {
                 mHandler.removeMessages(MSG_PREDICTION);
-                if (mCandidatesViewManager.getCurrentView().isShown()) {
-                    mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREDICTION),
-                                                PREDICTION_DELAY_MS_SHOWING_CANDIDATE);
-                } else {
-                    mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREDICTION),
-                                                PREDICTION_DELAY_MS_1ST);
-                }
+                mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREDICTION),
+                                            mPredictionScheduler.onKeyInput());
             } else {
                 mHandler.removeMessages(MSG_PREDICTION);
                 mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREDICTION), 0);
@@ -809,34 +806,30 @@ public class OpenWnnEN extends OpenWnn {
             this.mInputViewManager.onUpdateState(this);
 
             /* set the text for displaying as the composing text */
-            SpannableStringBuilder disp = mDisplayText;
-            disp.clear();
-            disp.insert(0, mComposingText.toString(layer));
+            ComposingRenderer renderer = mComposingRenderer;
+            renderer.setText(mComposingText.toString(layer));
+            int length = renderer.length();
 
             /* add decoration to the text */
             int cursor = mComposingText.getCursor(layer);
-            if (disp.length() != 0) {
-                if (cursor > 0 && cursor < disp.length()) {
-                    disp.setSpan(SPAN_EXACT_BGCOLOR_HL, 0, cursor,
-                            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            if (length != 0) {
+                if (cursor > 0 && cursor < length) {
+                    renderer.setSpan(SPAN_EXACT_BGCOLOR_HL, 0, cursor);
                 }
-                if (cursor < disp.length()) {
-                    mDisplayText.setSpan(SPAN_REMAIN_BGCOLOR_HL, cursor, disp.length(),
-                            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-                    mDisplayText.setSpan(SPAN_TEXTCOLOR, 0, disp.length(),
-                            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                if (cursor < length) {
+                    renderer.setSpan(SPAN_REMAIN_BGCOLOR_HL, cursor, length);
+                    renderer.setSpan(SPAN_TEXTCOLOR, 0, length);
                 }
 
-                disp.setSpan(SPAN_UNDERLINE, 0, disp.length(),
-                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                renderer.setSpan(SPAN_UNDERLINE, 0, length);
             }
 
             int displayCursor = cursor;
             if (FIX_CURSOR_TEXT_END) {
                 displayCursor = (cursor == 0) ?  0 : 1;
             }
-            /* update the composing text on the EditView */
-            mInputConnection.setComposingText(disp, displayCursor);
+            /* update the composing text on the EditView (only if it is changed) */
+            renderer.update(mInputConnection, displayCursor);
         }
     }
 
@@ -854,6 +847,7 @@ public class OpenWnnEN extends OpenWnn {
         }
 
         mInputConnection.commitText(tmp, (FIX_CURSOR_TEXT_END ? 1 : tmp.length()));
+        mComposingRenderer.invalidate();
         mCandidatesViewManager.clearCandidates();
     }
 
@@ -870,6 +864,7 @@ public class OpenWnnEN extends OpenWnn {
         }
 
         mInputConnection.commitText(word.candidate, (FIX_CURSOR_TEXT_END ? 1 : word.candidate.length()));
+        mComposingRenderer.invalidate();
 
         if (withSpace) {
             commitText(" ");
@@ -885,6 +880,7 @@ public class OpenWnnEN extends OpenWnn {
      */
     private void commitText(String str) {
         mInputConnection.commitText(str, (FIX_CURSOR_TEXT_END ? 1 : str.length()));
+        mComposingRenderer.invalidate();
         mCandidatesViewManager.clearCandidates();
     }
 
@@ -310,12 +310,32 @@ public class OpenWnnEvent {
      * @param ev    The key event
      */
     public OpenWnnEvent(KeyEvent ev) {
+        setKeyEvent(ev);
+    }
+    /**
+     * Reset this event to the one from {@link KeyEvent}
+     * <br>
+     * The event is the same as {@code OpenWnnEvent(ev)}; it is used
+     * to reuse an event for every key.
+     *
+     * @param ev    The key event
+     * @return      This event
+     */
+    public OpenWnnEvent setKeyEvent(KeyEvent ev) {
         if(ev.getAction() != KeyEvent.ACTION_UP){
             this.code = INPUT_KEY;
         }else{
             this.code = KEYUP;
         }
+        this.mode = 0;
+        this.dictionaryType = 0;
+        this.chars = null;
         this.keyEvent = ev;
+        this.toggleTable = null;
+        this.replaceTable = null;
+        this.word = null;
+        this.errorCode = 0;
+        return this;
     }
     /**
      * Generate {@link OpenWnnEvent} from {@link KeyEvent}
@@ -24,8 +24,6 @@ import android.content.res.Configuration;
 import android.os.Handler;
 import android.os.Message;
 import android.preference.PreferenceManager;
-import android.text.SpannableStringBuilder;
-import android.text.Spanned;
 import android.text.style.BackgroundColorSpan;
 import android.text.style.CharacterStyle;
 import android.text.style.ForegroundColorSpan;
@@ -114,14 +112,30 @@ public class OpenWnnJAJP extends OpenWnn {
     /** Alphabet-last pattern */
     private static final Pattern ENGLISH_CHARACTER_LAST = Pattern.compile(".*[a-zA-Z]$");
 
+    /** The strings of the ASCII characters (to make the segments of the hardware keys) */
+    private static final String[] ASCII_STRINGS = new String[128];
+    static {
+        for (int i = 0; i < ASCII_STRINGS.length; i++) {
+            ASCII_STRINGS[i] = String.valueOf((char) i);
+        }
+    }
+
     /**
      *  Private area character code got by {@link KeyEvent#getUnicodeChar()}.
      *   (SHIFT+ALT+X G1 specific)
      */
     private static final int PRIVATE_AREA_CODE = 61184;
 
-    /** Maximum length of input string */
-    private static final int LIMIT_INPUT_NUMBER = 30;
+    /**
+     * Maximum length of input string.
+     * <br>
+     * The consecutive clause conversion converts a long input by the window
+     * of {@link OpenWnnClauseConverterJAJP#MAX_INPUT_LENGTH} characters.
+     */
+    private static final int LIMIT_INPUT_NUMBER = 300;
+
+    /** Maximum length of the first clause specified by the cursor in the conversion */
+    private static final int MAX_FIRST_CLAUSE_LENGTH = OpenWnnClauseConverterJAJP.MAX_INPUT_LENGTH;
 
     /** Bit flag for English auto commit mode (ON) */
     private static final int AUTO_COMMIT_ENGLISH_ON      = 0x0000;
@@ -139,11 +153,9 @@ public class OpenWnnJAJP extends OpenWnn {
     /** Message for {@code mHandler} (close) */
     private static final int MSG_CLOSE = 2;
 
-    /** Delay time(msec.) to start prediction after key input when the candidates view is not shown. */
-    private static final int PREDICTION_DELAY_MS_1ST = 200;
+    /** Message for {@code mHandler} (prefetch prediction of the next key) */
+    private static final int MSG_PREFETCH = 3;
 
-    /** Delay time(msec.) to start prediction after key input when the candidates view is shown. */
-    private static final int PREDICTION_DELAY_MS_SHOWING_CANDIDATE = 200;
 
 
     /** Convert engine's state */
@@ -263,9 +275,6 @@ public class OpenWnnJAJP extends OpenWnn {
     /** Whether exact match searching or not */
     protected boolean mExactMatchMode = false;
 
-    /** Spannable string builder for displaying the composing text */
-    protected SpannableStringBuilder mDisplayText;
-
     /** Instance of this service */
     private static OpenWnnJAJP mSelf = null;
 
@@ -278,7 +287,10 @@ public class OpenWnnJAJP extends OpenWnn {
     /** OpenWnn conversion engine for Japanese */
     private OpenWnnEngineJAJP mConverterJAJP;
 
-    /** OpenWnn conversion engine for English */
+    /** OpenWnn engine for Japanese used by the prediction on the worker thread */
+    private OpenWnnEngineJAJP mPredictorJAJP;
+
+    /** OpenWnn conversion engine for English (used only by the prediction on the worker thread) */
     private OpenWnnEngineEN mConverterEN;
 
     /** Conversion engine for listing symbols */
@@ -348,6 +360,10 @@ public class OpenWnnJAJP extends OpenWnn {
 
     /** Regular expression pattern for English separators */
     private  Pattern mEnglishAutoCommitDelimiter = null;
+    /** Matcher of {@code mEnglishAutoCommitDelimiter} (reused for every key) */
+    private Matcher mEnglishAutoCommitMatcher = null;
+    /** Matcher of {@code ENGLISH_CHARACTER_LAST} (reused for every key) */
+    private Matcher mAlphabetLastMatcher = ENGLISH_CHARACTER_LAST.matcher("");
 
     /** Cursor position in the composing text */
     private int mComposingStartCursor = 0;
@@ -405,6 +421,9 @@ public class OpenWnnJAJP extends OpenWnn {
                 case MSG_PREDICTION:
                     updatePrediction();
                     break;
+                case MSG_PREFETCH:
+                    prefetchNextKey();
+                    break;
                 case MSG_START_TUTORIAL:
                     if (mTutorial == null) {
                         if (isInputViewShown()) {
@@ -420,8 +439,8 @@ public class OpenWnnJAJP extends OpenWnn {
                     }
                     break;
                 case MSG_CLOSE:
+                    mPredictionExecutor.shutdown();
                     if (mConverterJAJP != null) mConverterJAJP.close();
-                    if (mConverterEN != null) mConverterEN.close();
                     if (mConverterSymbolEngineBack != null) mConverterSymbolEngineBack.close();
                     break;
                 }
@@ -431,6 +450,72 @@ public class OpenWnnJAJP extends OpenWnn {
     /** The candidate filter */
     private CandidateFilter mFilter;
 
+    /** Executor of prediction on the worker thread */
+    private PredictionExecutor mPredictionExecutor = new PredictionExecutor(mEventQueue);
+
+    /** Scheduler of prediction (decides the delay time after key input) */
+    private PredictionScheduler mPredictionScheduler = new PredictionScheduler();
+
+    /** Ranking of the next key input (12-key keyboard) */
+    private NextKeyPrefetcher mNextKeyPrefetcher = new NextKeyPrefetcher();
+
+    /** Readings to prefetch (work area) */
+    private String[] mPrefetchReadings = new String[NextKeyPrefetcher.MAX_PREFETCH];
+
+    /** The candidates of the last prediction */
+    private WnnEngine mLastPrediction = null;
+
+    /** The row of the toggle table of the last toggle input */
+    private String[] mLastToggleRow = null;
+
+    /** Listener of the result of prediction */
+    private PredictionExecutor.Listener mPredictionListener = new PredictionExecutor.Listener() {
+            public void onPredicted(WnnEngine candidates, int count) {
+                /* update the candidates view */
+                if (count > 0) {
+                    mCandidatesViewManager.displayCandidates(candidates);
+                } else {
+                    mHasContinuedPrediction = false;
+                    mCandidatesViewManager.clearCandidates();
+                }
+                mPredictionScheduler.onPredictionEnd();
+
+                /* prefetch the next key input when the user pauses */
+                mLastPrediction = candidates;
+                mHandler.removeMessages(MSG_PREFETCH);
+                if (((DefaultSoftKeyboardJAJP) mInputViewManager).getToggleTable() != null) {
+                    mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREFETCH),
+                                                mPredictionScheduler.getPauseDelay());
+                }
+            }
+
+            public void onUpdated(WnnEngine candidates) {
+                /* show the candidates got after the first page */
+                mCandidatesViewManager.updateCandidates(candidates);
+            }
+        };
+
+    /** Command to initialize the engine */
+    private PredictionExecutor.Command mInitCommand = new PredictionExecutor.Command() {
+            public void run(WnnEngine engine) {
+                engine.init();
+            }
+        };
+
+    /** Command to break the sequence of words */
+    private PredictionExecutor.Command mBreakSequenceCommand = new PredictionExecutor.Command() {
+            public void run(WnnEngine engine) {
+                engine.breakSequence();
+            }
+        };
+
+    /** Command to initialize the learning dictionary */
+    private PredictionExecutor.Command mInitializeLearnCommand = new PredictionExecutor.Command() {
+            public void run(WnnEngine engine) {
+                engine.initializeDictionary(WnnEngine.DICTIONARY_TYPE_LEARN);
+            }
+        };
+
     /**
      * Constructor
      */
@@ -442,12 +527,17 @@ public class OpenWnnJAJP extends OpenWnn {
         mInputViewManager  = new DefaultSoftKeyboardJAJP();
         mConverter = mConverterJAJP = new OpenWnnEngineJAJP("/data/data/name.yxl.openwnn/writableJAJP.dic");
         mConverterEN = new OpenWnnEngineEN("/data/data/name.yxl.openwnn/writableEN.dic");
+        mPredictorJAJP = new OpenWnnEngineJAJP("/data/data/name.yxl.openwnn/writableJAJP.dic");
+        mPredictorJAJP.setCancellationSignal(mPredictionExecutor);
+        mPredictionExecutor.setPredictor(mConverterJAJP, mPredictorJAJP);
+        mConverterEN.setCancellationSignal(mPredictionExecutor);
+        mPredictionExecutor.setPredictor(mConverterEN, mConverterEN);
         mPreConverter = mPreConverterHiragana = new Romkan();
         mPreConverterFullKatakana = new RomkanFullKatakana();
         mPreConverterHalfKatakana = new RomkanHalfKatakana();
         mFilter = new CandidateFilter();
 
-        mDisplayText = new SpannableStringBuilder();
+        mComposingRenderer = new ComposingRenderer();
         mAutoHideMode = false;
 
         mPrevCommitText = new StringBuffer();
@@ -469,6 +559,7 @@ public class OpenWnnJAJP extends OpenWnn {
 
         String delimiter = Pattern.quote(getResources().getString(R.string.en_word_separators));
         mEnglishAutoCommitDelimiter = Pattern.compile(".*[" + delimiter + "]$");
+        mEnglishAutoCommitMatcher = mEnglishAutoCommitDelimiter.matcher("");
         if (mConverterSymbolEngineBack == null) {
             mConverterSymbolEngineBack = new SymbolList(this, SymbolList.LANG_JA);
         }
@@ -485,6 +576,7 @@ public class OpenWnnJAJP extends OpenWnn {
 
     /** @see name.yxl.openwnn.OpenWnn#onStartInputView */
     @Override public void onStartInputView(EditorInfo attribute, boolean restarting) {
+        mPredictionExecutor.cancel();
 
         if (restarting) {
             super.onStartInputView(attribute, restarting);
@@ -522,8 +614,16 @@ public class OpenWnnJAJP extends OpenWnn {
         }
     }
 
+    /** @see name.yxl.openwnn.OpenWnn#initConverter */
+    @Override protected void initConverter() {
+        if (mConverter != null) {
+            mPredictionExecutor.apply(mConverter, mInitCommand);
+        }
+    }
+
     /** @see name.yxl.openwnn.OpenWnn#hideWindow */
     @Override public void hideWindow() {
+        mPredictionExecutor.cancel();
         mComposingText.clear();
         mInputViewManager.onUpdateState(this);
         clearCommitInfo();
@@ -540,6 +640,8 @@ public class OpenWnnJAJP extends OpenWnn {
     /** @see name.yxl.openwnn.OpenWnn#onUpdateSelection */
     @Override public void onUpdateSelection(int oldSelStart, int oldSelEnd, int newSelStart, int newSelEnd, int candidatesStart, int candidatesEnd) {
 
+        mComposingRenderer.onUpdateSelection(newSelStart, newSelEnd, candidatesStart, candidatesEnd);
+
         mComposingStartCursor = (candidatesStart < 0) ? newSelEnd : candidatesStart;
 
         boolean prevSelection = mHasStartedTextSelection;
@@ -569,6 +671,7 @@ public class OpenWnnJAJP extends OpenWnn {
                 int commitEnd = mCommitStartCursor + mPrevCommitText.length();
                 if ((((newSelEnd < oldSelEnd) || (commitEnd < newSelEnd)) && clearCommitInfo())
                     || isNotComposing) {
+                    mPredictionExecutor.cancel();
                     if (isEnableL2Converter()) {
                         breakSequence();
                     }
@@ -576,6 +679,7 @@ public class OpenWnnJAJP extends OpenWnn {
                     if (mInputConnection != null) {
                         if (isNotComposing && (mComposingText.size(ComposingText.LAYER1) != 0)) {
                             mInputConnection.finishComposingText();
+                            mComposingRenderer.invalidate();
                         }
                     }
                     if ((prevSelection != mHasStartedTextSelection) || !mHasStartedTextSelection) {
@@ -588,6 +692,7 @@ public class OpenWnnJAJP extends OpenWnn {
 
     /** @see name.yxl.openwnn.OpenWnn#onConfigurationChanged */
     @Override public void onConfigurationChanged(Configuration newConfig) {
+        mPredictionExecutor.cancel();
         try {
             super.onConfigurationChanged(newConfig);
 
@@ -614,11 +719,25 @@ public class OpenWnnJAJP extends OpenWnn {
         }
     }
 
-    /** @see name.yxl.openwnn.OpenWnn#onEvent */
-    @Override synchronized public boolean onEvent(OpenWnnEvent ev) {
+    /** @see name.yxl.openwnn.OpenWnn#processEvent */
+    @Override protected boolean processEvent(OpenWnnEvent ev) {
 
         EngineState state;
 
+        /* make the prediction on the worker thread stale (this never waits for the worker) */
+        switch (ev.code) {
+        case OpenWnnEvent.KEYUP:
+        case OpenWnnEvent.CHANGE_INPUT_VIEW:
+        case OpenWnnEvent.CANDIDATE_VIEW_TOUCH:
+        case OpenWnnEvent.TOUCH_OTHER_KEY:
+        case OpenWnnEvent.LIST_CANDIDATES_NORMAL:
+        case OpenWnnEvent.LIST_CANDIDATES_FULL:
+            break;
+        default:
+            mPredictionExecutor.cancel();
+            break;
+        }
+
         /* handling events which are valid when InputConnection is not active. */
         switch (ev.code) {
 
@@ -627,12 +746,17 @@ public class OpenWnnJAJP extends OpenWnn {
             return true;
 
         case OpenWnnEvent.INITIALIZE_LEARNING_DICTIONARY:
-            mConverterEN.initializeDictionary(WnnEngine.DICTIONARY_TYPE_LEARN);
-            mConverterJAJP.initializeDictionary(WnnEngine.DICTIONARY_TYPE_LEARN);
+            mPredictionExecutor.apply(mConverterEN, mInitializeLearnCommand);
+            mPredictionExecutor.apply(mConverterJAJP, mInitializeLearnCommand);
             return true;
 
         case OpenWnnEvent.INITIALIZE_USER_DICTIONARY:
-            return mConverterJAJP.initializeDictionary( WnnEngine.DICTIONARY_TYPE_USER );
+            mPredictionExecutor.apply(mConverterJAJP, new PredictionExecutor.Command() {
+                    public void run(WnnEngine engine) {
+                        engine.initializeDictionary(WnnEngine.DICTIONARY_TYPE_USER);
+                    }
+                });
+            return true;
 
         case OpenWnnEvent.LIST_WORDS_IN_USER_DICTIONARY:
             mUserDictionaryWords = mConverterJAJP.getUserDictionaryWords( );
@@ -653,11 +777,22 @@ public class OpenWnnJAJP extends OpenWnn {
             break;
 
         case OpenWnnEvent.ADD_WORD:
-            mConverterJAJP.addWord(ev.word);
+            final WnnWord addWord = ev.word;
+            mPredictionExecutor.apply(mConverterJAJP, new PredictionExecutor.Command() {
+                    public void run(WnnEngine engine) {
+                        /* the word already added is not added again */
+                        engine.addWord(addWord);
+                    }
+                });
             return true;
 
         case OpenWnnEvent.DELETE_WORD:
-            mConverterJAJP.deleteWord(ev.word);
+            final WnnWord deleteWord = ev.word;
+            mPredictionExecutor.apply(mConverterJAJP, new PredictionExecutor.Command() {
+                    public void run(WnnEngine engine) {
+                        engine.deleteWord(deleteWord);
+                    }
+                });
             return true;
 
         case OpenWnnEvent.CHANGE_MODE:
@@ -670,7 +805,7 @@ public class OpenWnnJAJP extends OpenWnn {
         case OpenWnnEvent.UPDATE_CANDIDATE:
             if (mEngineState.isRenbun()) {
                 mComposingText.setCursor(ComposingText.LAYER1,
-                                         mComposingText.toString(ComposingText.LAYER1).length());
+                                         mComposingText.length(ComposingText.LAYER1));
                 mExactMatchMode = false;
                 updateViewStatusForPrediction(true, true);
             } else {
@@ -719,6 +854,7 @@ public class OpenWnnJAJP extends OpenWnn {
                 default:
                     break;
                 }
+                mComposingRenderer.invalidate();
             }
 
             /* return if InputConnection is not active */
@@ -866,6 +1002,7 @@ public class OpenWnnJAJP extends OpenWnn {
                     mInputConnection.sendKeyEvent(keyEvent);
                     mInputConnection.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_UP, code));
                 }
+                mComposingRenderer.invalidate();
                 ret = true;
             }
             break;
@@ -930,7 +1067,9 @@ public class OpenWnnJAJP extends OpenWnn {
         if (charCode == 0) {
             return null;
         }
-        return new StrSegment(Character.toChars(charCode));
+        String str = (charCode < ASCII_STRINGS.length) ? ASCII_STRINGS[charCode]
+            : String.valueOf(Character.toChars(charCode));
+        return mComposingText.obtainStrSegment(str, -1, -1);
     }
 
     /**
@@ -1050,7 +1189,7 @@ public class OpenWnnJAJP extends OpenWnn {
                 mStatus = STATUS_INPUT_EDIT;
                 if (mEngineState.isConvertState()) {
                     mComposingText.setCursor(ComposingText.LAYER1,
-                                             mComposingText.toString(ComposingText.LAYER1).length());
+                                             mComposingText.length(ComposingText.LAYER1));
                     mExactMatchMode = false;
                 } else {
                     if ((mComposingText.size(ComposingText.LAYER1) == 1)
@@ -1071,15 +1210,13 @@ public class OpenWnnJAJP extends OpenWnn {
                 } else {
                     if (!mEngineState.isConvertState()) {
                         initializeScreen();
-                        if (mConverter != null) {
-                            mConverter.init();
-                        }
+                        initConverter();
                     } else {
                         mCandidatesViewManager.clearCandidates();
                         mStatus = STATUS_INPUT_EDIT;
                         mExactMatchMode = false;
                         mComposingText.setCursor(ComposingText.LAYER1,
-                                                 mComposingText.toString(ComposingText.LAYER1).length());
+                                                 mComposingText.length(ComposingText.LAYER1));
                         updateViewStatusForPrediction(true, true);
                     }
                 }
@@ -1142,7 +1279,7 @@ public class OpenWnnJAJP extends OpenWnn {
                 case KeyEvent.KEYCODE_DPAD_LEFT:
                     if (isEnableL2Converter()) {
                         /* initialize the converter */
-                        mConverter.init();
+                        initConverter();
                     }
                     mStatus = STATUS_INPUT_EDIT;
                     updateViewStatusForPrediction(true, true);
@@ -1151,7 +1288,7 @@ public class OpenWnnJAJP extends OpenWnn {
                 case KeyEvent.KEYCODE_DPAD_RIGHT:
                     if (isEnableL2Converter()) {
                         /* initialize the converter */
-                        mConverter.init();
+                        initConverter();
                     }
                     mStatus = STATUS_INPUT_EDIT;
                     updateViewStatusForPrediction(true, true);
@@ -1249,8 +1386,7 @@ public class OpenWnnJAJP extends OpenWnn {
         if (isEnableL2Converter()) {
             boolean commit = false;
             if (mPreConverter == null) {
-                Matcher m = mEnglishAutoCommitDelimiter.matcher(str.string);
-                if (m.matches()) {
+                if (mEnglishAutoCommitMatcher.reset(str.string).matches()) {
                     commitText(true);
 
                     commit = true;
@@ -1286,30 +1422,42 @@ public class OpenWnnJAJP extends OpenWnn {
         }
     }
 
-    /** Thread for updating the candidates view */
+    /**
+     * Update the candidates view.
+     * <br>
+     * The prediction runs on the worker thread, and the candidates view is
+     * updated by {@code mPredictionListener} when the result is ready.
+     */
     private void updatePrediction() {
-        int candidates = 0;
         int cursor = mComposingText.getCursor(ComposingText.LAYER1);
         if (isEnableL2Converter() || mEngineState.isSymbolList()) {
-            if (mExactMatchMode) {
-                /* exact matching */
-                candidates = mConverter.predict(mComposingText, 0, cursor);
-            } else {
-                /* normal prediction */
-                candidates = mConverter.predict(mComposingText, 0, -1);
-            }
-        }
-
-        /* update the candidates view */
-        if (candidates > 0) {
             mHasContinuedPrediction = ((mComposingText.size(ComposingText.LAYER1) == 0)
                                        && !mEngineState.isSymbolList());
-            mCandidatesViewManager.displayCandidates(mConverter);
+            /* exact matching or normal prediction */
+            int maxLen = (mExactMatchMode) ? cursor : -1;
+            mPredictionScheduler.onPredictionStart();
+            mPredictionExecutor.request(mConverter, mComposingText, 0, maxLen, mPredictionListener);
         } else {
+            mPredictionExecutor.cancel();
             mCandidatesViewManager.clearCandidates();
         }
     }
 
+    /**
+     * Prefetch the prediction of the readings which may be input next (12-key keyboard).
+     */
+    private void prefetchNextKey() {
+        String[][] table = ((DefaultSoftKeyboardJAJP) mInputViewManager).getToggleTable();
+        if (table == null || mLastPrediction == null || !mEnablePrediction
+            || mExactMatchMode || mEngineState.isConvertState() || !isEnableL2Converter()) {
+            return;
+        }
+        String[] toggleRow = ((mStatus & ~STATUS_CANDIDATE_FULL) == STATUS_INPUT) ? mLastToggleRow : null;
+        int count = mNextKeyPrefetcher.rank(mComposingText.toString(ComposingText.LAYER1),
+                                            mLastPrediction, table, toggleRow, mPrefetchReadings);
+        mPredictionExecutor.prefetch(mConverter, mComposingText, mPrefetchReadings, count);
+    }
+
     /**
      * Handle a left key event.
      */
@@ -1351,10 +1499,12 @@ public class OpenWnnJAJP extends OpenWnn {
                 EngineState state = new EngineState();
                 state.convertType = EngineState.CONVERT_TYPE_NONE;
                 updateEngineState(state);
-            } else {
-                if (mEngineState.isEisuKana()) {
-                    mExactMatchMode = true;
-                }
+            } else if (mEngineState.isEisuKana()) {
+                mExactMatchMode = true;
+                composingText.moveCursor(ComposingText.LAYER1, 1);
+            } else if (!mEngineState.isConvertState()
+                       || composingText.getCursor(ComposingText.LAYER1) < MAX_FIRST_CLAUSE_LENGTH) {
+                /* the first clause cannot be extended beyond the limit of the engine */
                 composingText.moveCursor(ComposingText.LAYER1, 1);
             }
         } else {
@@ -1414,10 +1564,8 @@ public class OpenWnnJAJP extends OpenWnn {
             return true;
         }
 
-        if (mConverter != null) {
-            /* initialize the converter */
-            mConverter.init();
-        }
+        /* initialize the converter */
+        initConverter();
         updateViewStatusForPrediction(true, true);
         return ret;
     }
@@ -1453,12 +1601,13 @@ public class OpenWnnJAJP extends OpenWnn {
         mInputViewManager.onUpdateState(this);
 
         /* set the text for displaying as the composing text */
-        mDisplayText.clear();
-        mDisplayText.insert(0, mComposingText.toString(layer));
+        ComposingRenderer renderer = mComposingRenderer;
+        renderer.setText(mComposingText.toString(layer));
+        int length = renderer.length();
 
         /* add decoration to the text */
         int cursor = mComposingText.getCursor(layer);
-        if ((mInputConnection != null) && (mDisplayText.length() != 0 || updateEmptyText)) {
+        if ((mInputConnection != null) && (length != 0 || updateEmptyText)) {
             if (cursor != 0) {
                 int highlightEnd = 0;
 
@@ -1466,48 +1615,43 @@ public class OpenWnnJAJP extends OpenWnn {
                     || (FIX_CURSOR_TEXT_END && isEnglishPrediction()
                         && (cursor < mComposingText.size(ComposingText.LAYER1)))){
 
-                    mDisplayText.setSpan(SPAN_EXACT_BGCOLOR_HL, 0, cursor,
-                                         Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    renderer.setSpan(SPAN_EXACT_BGCOLOR_HL, 0, cursor);
                     highlightEnd = cursor;
 
                 } else if (FIX_CURSOR_TEXT_END && mEngineState.isEisuKana()) {
-                    mDisplayText.setSpan(SPAN_EISUKANA_BGCOLOR_HL, 0, cursor,
-                                         Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    renderer.setSpan(SPAN_EISUKANA_BGCOLOR_HL, 0, cursor);
                     highlightEnd = cursor;
 
                 } else if (layer == ComposingText.LAYER2) {
-                    highlightEnd = mComposingText.toString(layer, 0, 0).length();
+                    highlightEnd = mComposingText.length(layer, 0, 0);
 
                     /* highlights the first segment */
-                    mDisplayText.setSpan(SPAN_CONVERT_BGCOLOR_HL, 0,
-                                         highlightEnd,
-                                         Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    renderer.setSpan(SPAN_CONVERT_BGCOLOR_HL, 0, highlightEnd);
                 }
 
                 if (FIX_CURSOR_TEXT_END && (highlightEnd != 0)) {
                     /* highlights remaining text */
-                    mDisplayText.setSpan(SPAN_REMAIN_BGCOLOR_HL, highlightEnd,
-                                         mComposingText.toString(layer).length(),
-                                         Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    renderer.setSpan(SPAN_REMAIN_BGCOLOR_HL, highlightEnd, length);
 
                     /* text color in the highlight */
-                    mDisplayText.setSpan(SPAN_TEXTCOLOR, 0,
-                                         mComposingText.toString(layer).length(),
-                                         Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    renderer.setSpan(SPAN_TEXTCOLOR, 0, length);
                 }
             }
 
-            mDisplayText.setSpan(SPAN_UNDERLINE, 0, mDisplayText.length(),
-                                 Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            renderer.setSpan(SPAN_UNDERLINE, 0, length);
 
-            int displayCursor = mComposingText.toString(layer, 0, cursor - 1).length();
+            int displayCursor = mComposingText.length(layer, 0, cursor - 1);
             if (FIX_CURSOR_TEXT_END) {
                 displayCursor = (cursor == 0) ?  0 : 1;
             }
-            /* update the composing text on the EditView */
-            if ((mDisplayText.length() != 0) || !mHasStartedTextSelection) {
-                mInputConnection.setComposingText(mDisplayText, displayCursor);
+            /* update the composing text on the EditView (only if it is changed) */
+            if ((length != 0) || !mHasStartedTextSelection) {
+                renderer.update(mInputConnection, displayCursor);
+            } else {
+                renderer.discard();
             }
+        } else {
+            renderer.discard();
         }
     }
 
@@ -1523,14 +1667,14 @@ public class OpenWnnJAJP extends OpenWnn {
                 if ((mComposingText.size(ComposingText.LAYER1) != 0)
                     && !mEngineState.isConvertState()) {
 
-                    mHandler.removeMessages(MSG_PREDICTION);
-                    if (mCandidatesViewManager.getCurrentView().isShown()) {
-                        mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREDICTION),
-                                                    PREDICTION_DELAY_MS_SHOWING_CANDIDATE);
-                    } else {
-                        mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREDICTION),
-                                                    PREDICTION_DELAY_MS_1ST);
+                    int delay = mPredictionScheduler.onKeyInput();
+                    if (mPredictionExecutor.hasCache(mConverter, mComposingText.toString(ComposingText.LAYER1))) {
+                        /* the prediction has been prefetched */
+                        delay = 0;
                     }
+                    mHandler.removeMessages(MSG_PREDICTION);
+                    mHandler.removeMessages(MSG_PREFETCH);
+                    mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREDICTION), delay);
                 } else {
                     mHandler.removeMessages(MSG_PREDICTION);
                     updatePrediction();
@@ -1541,8 +1685,19 @@ public class OpenWnnJAJP extends OpenWnn {
             }
             break;
         case ComposingText.LAYER2: /* convert */
+            if (mConverter == mConverterEN) {
+                /* the English engine has no conversion (and is used only by the worker) */
+                mComposingText.setCursor(ComposingText.LAYER1,
+                                         mComposingText.length(ComposingText.LAYER1));
+                mCandidatesViewManager.clearCandidates();
+                break;
+            }
             if (mCommitCount == 0) {
                 mHandler.removeMessages(MSG_PREDICTION);
+                if (mComposingText.getCursor(ComposingText.LAYER1) > MAX_FIRST_CLAUSE_LENGTH) {
+                    /* the first clause specified is longer than the limit of the engine */
+                    mComposingText.setCursor(ComposingText.LAYER1, MAX_FIRST_CLAUSE_LENGTH);
+                }
                 mConverter.convert(mComposingText);
             }
 
@@ -1553,7 +1708,7 @@ public class OpenWnnJAJP extends OpenWnn {
                 mCandidatesViewManager.displayCandidates(mConverter);
             } else {
                 mComposingText.setCursor(ComposingText.LAYER1,
-                                         mComposingText.toString(ComposingText.LAYER1).length());
+                                         mComposingText.length(ComposingText.LAYER1));
                 mCandidatesViewManager.clearCandidates();
             }
             break;
@@ -1651,6 +1806,7 @@ public class OpenWnnJAJP extends OpenWnn {
      */
     private void commitText(String str) {
         mInputConnection.commitText(str, (FIX_CURSOR_TEXT_END ? 1 : str.length()));
+        mComposingRenderer.invalidate();
         mPrevCommitText.append(str);
         mPrevCommitCount++;
         mEnableAutoDeleteSpace = true;
@@ -1667,6 +1823,7 @@ public class OpenWnnJAJP extends OpenWnn {
         int layer = mTargetLayer;
 
         mInputConnection.commitText(string, (FIX_CURSOR_TEXT_END ? 1 : string.length()));
+        mComposingRenderer.invalidate();
         mPrevCommitText.append(string);
         mPrevCommitCount++;
 
@@ -1899,22 +2056,34 @@ public class OpenWnnJAJP extends OpenWnn {
 
         /* keyboard type */
         if (state.keyboard != EngineState.INVALID) {
+            final int keyboardType;
+            final int dictionaryEN;
             switch (state.keyboard) {
             case EngineState.KEYBOARD_12KEY:
-                mConverterJAJP.setKeyboardType(OpenWnnEngineJAJP.KEYBOARD_KEYPAD12);
-                mConverterEN.setDictionary(OpenWnnEngineEN.DICT_DEFAULT);
+                keyboardType = OpenWnnEngineJAJP.KEYBOARD_KEYPAD12;
+                dictionaryEN = OpenWnnEngineEN.DICT_DEFAULT;
                 break;
 
             case EngineState.KEYBOARD_QWERTY:
             default:
-                mConverterJAJP.setKeyboardType(OpenWnnEngineJAJP.KEYBOARD_QWERTY);
+                keyboardType = OpenWnnEngineJAJP.KEYBOARD_QWERTY;
                 if (mEnableSpellCorrection) {
-                    mConverterEN.setDictionary(OpenWnnEngineEN.DICT_FOR_CORRECT_MISTYPE);
+                    dictionaryEN = OpenWnnEngineEN.DICT_FOR_CORRECT_MISTYPE;
                 } else {
-                    mConverterEN.setDictionary(OpenWnnEngineEN.DICT_DEFAULT);
+                    dictionaryEN = OpenWnnEngineEN.DICT_DEFAULT;
                 }
                 break;
             }
+            mPredictionExecutor.apply(mConverterJAJP, new PredictionExecutor.Command() {
+                    public void run(WnnEngine engine) {
+                        ((OpenWnnEngineJAJP)engine).setKeyboardType(keyboardType);
+                    }
+                });
+            mPredictionExecutor.apply(mConverterEN, new PredictionExecutor.Command() {
+                    public void run(WnnEngine engine) {
+                        ((OpenWnnEngineEN)engine).setDictionary(dictionaryEN);
+                    }
+                });
             myState.keyboard = state.keyboard;
         }
     }
@@ -1968,7 +2137,12 @@ public class OpenWnnJAJP extends OpenWnn {
             break;
         }
 
-        mConverterJAJP.setDictionary(target);
+        final int type = target;
+        mPredictionExecutor.apply(mConverterJAJP, new PredictionExecutor.Command() {
+                public void run(WnnEngine engine) {
+                    ((OpenWnnEngineJAJP)engine).setDictionary(type);
+                }
+            });
     }
 
     /**
@@ -2015,6 +2189,9 @@ public class OpenWnnJAJP extends OpenWnn {
         }
 
         mStatus = STATUS_INPUT;
+        mLastToggleRow = table;
+        mNextKeyPrefetcher.learn(mComposingText.toString(ComposingText.LAYER1),
+                                 ((DefaultSoftKeyboardJAJP) mInputViewManager).getToggleTable(), table);
 
         updateViewStatusForPrediction(true, true);
     }
@@ -2080,8 +2257,7 @@ public class OpenWnnJAJP extends OpenWnn {
             if (isEnglishPrediction()
                 && (mEngineState.keyboard == EngineState.KEYBOARD_QWERTY)) {
 
-                Matcher m = mEnglishAutoCommitDelimiter.matcher(new String(chars));
-                if (m.matches()) {
+                if (mEnglishAutoCommitMatcher.reset(new String(chars)).matches()) {
                     commit = true;
                 }
             }
@@ -2160,12 +2336,12 @@ public class OpenWnnJAJP extends OpenWnn {
     private boolean autoCommitEnglish() {
         if (isEnglishPrediction() && (mDisableAutoCommitEnglishMask == AUTO_COMMIT_ENGLISH_ON)) {
             CharSequence seq = mInputConnection.getTextBeforeCursor(2, 0);
-            Matcher m = mEnglishAutoCommitDelimiter.matcher(seq);
-            if (m.matches()) {
+            if (mEnglishAutoCommitMatcher.reset(seq).matches()) {
                 if ((seq.charAt(0) == ' ') && mEnableAutoDeleteSpace) {
                     mInputConnection.deleteSurroundingText(2, 0);
                     CharSequence str = seq.subSequence(1, 2);
                     mInputConnection.commitText(str, 1);
+                    mComposingRenderer.invalidate();
                     mPrevCommitText.append(str);
                     mPrevCommitCount++;
                 }
@@ -2234,7 +2410,7 @@ public class OpenWnnJAJP extends OpenWnn {
      */
     private void learnWord(WnnWord word) {
         if (mEnableLearning && word != null) {
-            mConverter.learn(word);
+            mPredictionExecutor.learn(mConverter, word);
         }
     }
 
@@ -2249,10 +2425,10 @@ public class OpenWnnJAJP extends OpenWnn {
         if (mEnableLearning && composingText.size(ComposingText.LAYER2) > index) {
             StrSegment seg = composingText.getStrSegment(ComposingText.LAYER2, index);
             if (seg instanceof StrSegmentClause) {
-                mConverter.learn(((StrSegmentClause)seg).clause);
+                mPredictionExecutor.learn(mConverter, ((StrSegmentClause)seg).clause);
             } else {
                 String stroke = composingText.toString(ComposingText.LAYER1, seg.from, seg.to);
-                mConverter.learn(new WnnWord(seg.string, stroke));
+                mPredictionExecutor.learn(mConverter, new WnnWord(seg.string, stroke));
             }
         }
     }
@@ -2278,7 +2454,8 @@ public class OpenWnnJAJP extends OpenWnn {
         mEnableSymbolList = true;
         mEnableSymbolListNonHalf = true;
         mAutoCaps = preference.getBoolean("auto_caps", true);
-        mFilter.filter = 0;
+        /* the filter given to the engines is not modified (the worker may be using it) */
+        mFilter = new CandidateFilter();
         mEnableAutoInsertSpace = true;
         mEnableAutoHideKeyboard = false;
 
@@ -2340,13 +2517,17 @@ public class OpenWnnJAJP extends OpenWnn {
             break;
         }
 
-        if (mFilter.filter == 0) {
-            mConverterEN.setFilter(null);
-            mConverterJAJP.setFilter(null);
-        } else {
-            mConverterEN.setFilter(mFilter);
-            mConverterJAJP.setFilter(mFilter);
-        }
+        final CandidateFilter filter = (mFilter.filter == 0) ? null : mFilter;
+        mPredictionExecutor.apply(mConverterEN, new PredictionExecutor.Command() {
+                public void run(WnnEngine engine) {
+                    ((OpenWnnEngineEN)engine).setFilter(filter);
+                }
+            });
+        mPredictionExecutor.apply(mConverterJAJP, new PredictionExecutor.Command() {
+                public void run(WnnEngine engine) {
+                    ((OpenWnnEngineJAJP)engine).setFilter(filter);
+                }
+            });
 
         EngineState state = new EngineState();
         state.preferenceDictionary = preferenceDictionary;
@@ -2388,6 +2569,7 @@ public class OpenWnnJAJP extends OpenWnn {
 
             String text = mComposingText.toString(ComposingText.LAYER2);
             mInputConnection.commitText(text, (FIX_CURSOR_TEXT_END ? 1 : text.length()));
+            mComposingRenderer.invalidate();
             mPrevCommitText.append(text);
             mPrevCommitCount++;
             initializeScreen();
@@ -2400,6 +2582,7 @@ public class OpenWnnJAJP extends OpenWnn {
     private void initializeScreen() {
         if (mComposingText.size(ComposingText.LAYER0) != 0) {
             mInputConnection.setComposingText("", 0);
+            mComposingRenderer.invalidate();
         }
         mComposingText.clear();
         mExactMatchMode = false;
@@ -2423,12 +2606,12 @@ public class OpenWnnJAJP extends OpenWnn {
      * @return          {@code true} if the tail is alphabet; {@code false} if otherwise.
      */
     private boolean isAlphabetLast(String str) {
-        Matcher m = ENGLISH_CHARACTER_LAST.matcher(str);
-        return m.matches();
+        return mAlphabetLastMatcher.reset(str).matches();
     }
 
     /** @see name.yxl.openwnn.OpenWnn#onFinishInput */
     @Override public void onFinishInput() {
+        mPredictionExecutor.cancel();
         if (mInputConnection != null) {
             initializeScreen();
         }
@@ -2510,7 +2693,7 @@ public class OpenWnnJAJP extends OpenWnn {
             return;
         }
 
-        int composingLength = mComposingText.toString(mTargetLayer).length();
+        int composingLength = mComposingText.length(mTargetLayer);
         CharSequence seq = mInputConnection.getTextBeforeCursor(mPrevCommitText.length() + composingLength, 0);
         seq = seq.subSequence(0, seq.length() - composingLength);
         if (!seq.equals(mPrevCommitText.toString())) {
@@ -2573,7 +2756,7 @@ public class OpenWnnJAJP extends OpenWnn {
      */
     private void breakSequence() {
         mEnableAutoDeleteSpace = false;
-        mConverterJAJP.breakSequence();
-        mConverterEN.breakSequence();
+        mPredictionExecutor.apply(mConverterJAJP, mBreakSequenceCommand);
+        mPredictionExecutor.apply(mConverterEN, mBreakSequenceCommand);
     }
 }
@@ -0,0 +1,841 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * The executor class of prediction.
+ * <br>
+ * This class runs {@link WnnEngine#predict} and gets the candidates on
+ * a worker thread, and posts the result to the {@link EventQueue}, which
+ * applies it on the UI thread in order with the events.
+ * <p>
+ * The worker predicts with its own engine (the predictor) which is set
+ * by {@link #setPredictor}, so the UI thread keeps using the engine
+ * (conversion, etc.) while the worker is predicting, and never waits for
+ * the worker.  The settings of the engine are given to the predictor by
+ * {@link #apply}, and the words are learned by {@link #learn}.  An engine
+ * without a predictor predicts on the UI thread.
+ * </p><p>
+ * Each request is tagged with the generation number of the
+ * {@link ComposingText}.  A request becomes stale when the composing
+ * text is modified or a newer request is made.  The predictor is given
+ * this executor as its {@link CancellationSignal}, and stops searching
+ * as soon as the request is stale.  Only the result of the latest
+ * request is delivered to the {@link Listener}.
+ * </p>
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class PredictionExecutor implements CancellationSignal {
+    /** Number of candidates got at once (the result is posted after the first batch) */
+    public static final int FIRST_BATCH_SIZE = 32;
+
+    /** Maximum number of candidates got for a request */
+    public static final int MAX_CANDIDATES = 500;
+
+    /** Maximum number of results of prefetch kept in the cache */
+    public static final int PREFETCH_CACHE_SIZE = 16;
+
+    /** Time budget(msec.; elapsed time from the start) of a prefetch */
+    public static final int PREFETCH_BUDGET_MS = 100;
+
+    /**
+     * The listener of the result of prediction.
+     */
+    public interface Listener {
+        /**
+         * Called on the UI thread when the result of the latest request is ready.
+         * <br>
+         * The worker may still be getting the rest of the candidates;
+         * {@link #onUpdated} is called when it gets more.
+         *
+         * @param candidates    The candidates ({@link WnnEngine#getNextCandidate} returns them in order)
+         * @param count         The return value of {@link WnnEngine#predict}
+         */
+        public void onPredicted(WnnEngine candidates, int count);
+
+        /**
+         * Called on the UI thread when more candidates of the latest result are got.
+         *
+         * @param candidates    The candidates given to {@link #onPredicted}
+         */
+        public void onUpdated(WnnEngine candidates);
+    }
+
+    /**
+     * The command to an engine.
+     */
+    public interface Command {
+        /**
+         * Run the command.
+         *
+         * @param engine    The engine (or its predictor)
+         */
+        public void run(WnnEngine engine);
+    }
+
+    /** Sequence number of the latest request */
+    private volatile int mSequence = 0;
+
+    /** The worker thread */
+    private HandlerThread mThread;
+
+    /** {@code Handler} of the worker thread */
+    private Handler mWorker;
+
+    /** The queue which the results are posted to */
+    private final EventQueue mQueue;
+
+    /** The predictors (engine to its predictor; used only on the UI thread) */
+    private HashMap<WnnEngine, WnnEngine> mPredictors = new HashMap<WnnEngine, WnnEngine>();
+
+    /** The task running on the worker thread ({@code null} if none; used only on the worker thread) */
+    private Task mCurrentTask = null;
+
+    /** Results of prefetch (reading to candidates; in access order) */
+    private LinkedHashMap<String, CandidateList> mCache
+        = new LinkedHashMap<String, CandidateList>(PREFETCH_CACHE_SIZE, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, CandidateList> eldest) {
+                return size() > PREFETCH_CACHE_SIZE;
+            }
+        };
+
+    /** The engine which the results of prefetch are got from */
+    private WnnEngine mCacheEngine = null;
+
+    /**
+     * Constructor
+     *
+     * @param queue     The queue which the results are posted to
+     */
+    public PredictionExecutor(EventQueue queue) {
+        mQueue = queue;
+    }
+
+    /**
+     * Set the predictor of an engine.
+     * <br>
+     * The predictor is used only by the worker thread from then on.  It
+     * may be the engine itself if the UI thread uses the engine only
+     * through this executor.  Give the predictor this executor as its
+     * {@link CancellationSignal}.
+     *
+     * @param engine    The engine
+     * @param predictor The predictor of the engine
+     */
+    public void setPredictor(WnnEngine engine, WnnEngine predictor) {
+        mPredictors.put(engine, predictor);
+    }
+
+    /**
+     * Request a prediction.
+     * <br>
+     * This method must be called on the UI thread.  The previous request
+     * becomes stale.  If the result for the reading has been prefetched,
+     * it is posted at once, and the worker gets the rest of it.
+     *
+     * @param engine    The engine
+     * @param text      The composing text
+     * @param minLen    The minimum length of a word to predict (see {@link WnnEngine#predict})
+     * @param maxLen    The maximum length of a word to predict (see {@link WnnEngine#predict})
+     * @param listener  The listener of the result
+     */
+    public void request(WnnEngine engine, ComposingText text, int minLen, int maxLen, Listener listener) {
+        int sequence = ++mSequence;
+        WnnEngine predictor = mPredictors.get(engine);
+        if (predictor == null) {
+            /* predict on the UI thread */
+            Request request = new Request(sequence, engine, engine, text, minLen, maxLen, listener, null);
+            request.post(engine, engine.predict(text, minLen, maxLen));
+            return;
+        }
+
+        CandidateList cached = null;
+        if (minLen == 0 && maxLen == -1) {
+            cached = getCache(engine, text.toString(ComposingText.LAYER1));
+        }
+        Request request = new Request(sequence, engine, predictor, text, minLen, maxLen, listener, cached);
+        if (cached != null) {
+            request.post(cached, cached.mCount);
+            if (cached.isComplete() || cached.size() >= MAX_CANDIDATES) {
+                return;
+            }
+        }
+        startWorker();
+        mWorker.post(request);
+    }
+
+    /**
+     * Prefetch the results of prediction in the background.
+     * <br>
+     * This method must be called on the UI thread.  The readings are
+     * predicted one by one in order until {@code PREFETCH_BUDGET_MS} has
+     * passed, and the first page of each result is kept in the cache (a
+     * request which hits the cache gets the rest).  The worker runs the
+     * other tasks between the readings.  The prefetch is cancelled when
+     * the composing text is modified or a request is made, and the
+     * predictor stops searching at once.
+     *
+     * @param engine    The engine
+     * @param text      The current composing text
+     * @param readings  The readings to predict (in order of priority)
+     * @param count     The number of the readings
+     */
+    public void prefetch(WnnEngine engine, ComposingText text, String[] readings, int count) {
+        WnnEngine predictor = mPredictors.get(engine);
+        if (count <= 0 || predictor == null) {
+            return;
+        }
+        String[] copy = new String[count];
+        System.arraycopy(readings, 0, copy, 0, count);
+        startWorker();
+        mWorker.post(new Prefetch(++mSequence, engine, predictor, text, copy, mWorker));
+    }
+
+    /**
+     * Run a command which changes the settings of an engine.
+     * <br>
+     * This method must be called on the UI thread.  The command is run on
+     * the engine at once (unless the engine is its own predictor), and on
+     * the predictor by the worker thread in order with the requests.  The
+     * results of prefetch are cleared.
+     *
+     * @param engine    The engine
+     * @param command   The command
+     */
+    public void apply(WnnEngine engine, final Command command) {
+        final WnnEngine predictor = mPredictors.get(engine);
+        if (predictor != engine) {
+            command.run(engine);
+        }
+        if (predictor != null) {
+            clearCache();
+            startWorker();
+            mWorker.post(new Runnable() {
+                    public void run() {
+                        command.run(predictor);
+                        clearCache();
+                    }
+                });
+        }
+    }
+
+    /**
+     * Learn a word.
+     * <br>
+     * This method must be called on the UI thread.  The word is learned
+     * by the predictor on the worker thread (the learning dictionary is
+     * written only once), and then the engine is initialized on the UI
+     * thread so that it drops the words searched before.  The results of
+     * prefetch are cleared.
+     *
+     * @param engine    The engine
+     * @param word      The word
+     */
+    public void learn(final WnnEngine engine, final WnnWord word) {
+        final WnnEngine predictor = mPredictors.get(engine);
+        if (predictor == null) {
+            engine.learn(word);
+            return;
+        }
+        clearCache();
+        startWorker();
+        mWorker.post(new Runnable() {
+                public void run() {
+                    predictor.learn(word);
+                    clearCache();
+                    if (predictor != engine) {
+                        mQueue.post(new Runnable() {
+                                public void run() {
+                                    engine.init();
+                                }
+                            });
+                    }
+                }
+            });
+    }
+
+    /**
+     * Whether the result of prediction of the reading has been prefetched or not.
+     *
+     * @param engine    The engine
+     * @param reading   The reading
+     * @return          {@code true} if the result is in the cache; {@code false} if otherwise.
+     */
+    public boolean hasCache(WnnEngine engine, String reading) {
+        return (getCache(engine, reading) != null);
+    }
+
+    /**
+     * Clear the results of prefetch.
+     * <br>
+     * Call this method when the results of the engine change (learning,
+     * changing the dictionary, etc.).
+     */
+    public void clearCache() {
+        synchronized (mCache) {
+            mCache.clear();
+            mCacheEngine = null;
+        }
+    }
+
+    /**
+     * Cancel the request.
+     * <br>
+     * The result of the request is not delivered, and the predictor stops
+     * searching at its next check of the {@link CancellationSignal}.  This
+     * method does not wait for the worker.
+     */
+    public void cancel() {
+        mSequence++;
+    }
+
+    /**
+     * Cancel the request and stop the worker thread.
+     * <br>
+     * The commands posted before are run, and then the predictors are
+     * closed on the worker thread.
+     */
+    public void shutdown() {
+        cancel();
+        clearCache();
+        final ArrayList<WnnEngine> predictors = new ArrayList<WnnEngine>(mPredictors.values());
+        if (mThread == null) {
+            closeAll(predictors);
+            return;
+        }
+        final HandlerThread thread = mThread;
+        mWorker.post(new Runnable() {
+                public void run() {
+                    closeAll(predictors);
+                    thread.quit();
+                }
+            });
+        mThread = null;
+        mWorker = null;
+    }
+
+    /**
+     * Whether the task running on the worker thread is stale or not.
+     * <br>
+     * This method is called by the predictors on the worker thread.
+     *
+     * @see name.yxl.openwnn.CancellationSignal#isCancelled
+     */
+    public boolean isCancelled() {
+        Task task = mCurrentTask;
+        return (task != null) && task.isStale();
+    }
+
+    /**
+     * Start the worker thread if it is not running.
+     */
+    private void startWorker() {
+        if (mThread == null) {
+            mThread = new HandlerThread("OpenWnnPrediction", Process.THREAD_PRIORITY_DEFAULT);
+            mThread.start();
+            mWorker = new Handler(mThread.getLooper());
+        }
+    }
+
+    /**
+     * Close the engines.
+     *
+     * @param engines   The engines
+     */
+    private static void closeAll(ArrayList<WnnEngine> engines) {
+        Iterator<WnnEngine> it = engines.iterator();
+        while (it.hasNext()) {
+            it.next().close();
+        }
+    }
+
+    /**
+     * Get the result of prefetch.
+     *
+     * @param engine    The engine
+     * @param reading   The reading
+     * @return          The result; {@code null} if not prefetched.
+     */
+    private CandidateList getCache(WnnEngine engine, String reading) {
+        if (reading == null) {
+            return null;
+        }
+        synchronized (mCache) {
+            if (mCacheEngine != engine) {
+                return null;
+            }
+            return mCache.get(reading);
+        }
+    }
+
+    /**
+     * Put the result of prefetch into the cache.
+     *
+     * @param engine    The engine
+     * @param reading   The reading
+     * @param result    The result
+     */
+    private void putCache(WnnEngine engine, String reading, CandidateList result) {
+        synchronized (mCache) {
+            if (mCacheEngine != engine) {
+                mCache.clear();
+                mCacheEngine = engine;
+            }
+            mCache.put(reading, result);
+        }
+    }
+
+    /**
+     * A task on the worker thread.
+     */
+    private abstract class Task implements Runnable {
+        /** Sequence number */
+        protected final int mTaskSequence;
+        /** Generation number of the composing text */
+        protected final int mGeneration;
+        /** The engine */
+        protected final WnnEngine mEngine;
+        /** The predictor of the engine */
+        protected final WnnEngine mPredictor;
+        /** The composing text */
+        protected final ComposingText mText;
+
+        /**
+         * Constructor
+         *
+         * @param sequence  The sequence number
+         * @param engine    The engine
+         * @param predictor The predictor of the engine
+         * @param text      The composing text
+         */
+        Task(int sequence, WnnEngine engine, WnnEngine predictor, ComposingText text) {
+            mTaskSequence = sequence;
+            mGeneration = text.getGeneration();
+            mEngine = engine;
+            mPredictor = predictor;
+            mText = text;
+        }
+
+        /**
+         * Whether this task is stale or not.
+         *
+         * @return      {@code true} if stale; {@code false} if otherwise.
+         */
+        boolean isStale() {
+            return (mTaskSequence != mSequence) || (mGeneration != mText.getGeneration());
+        }
+
+        /**
+         * Get the candidates from the predictor page by page.
+         * <br>
+         * The candidates are got from the end of the list.
+         *
+         * @param result    The list to add the candidates
+         * @param limit     The maximum number of the candidates in the list
+         * @return          {@code false} if stopped because the task is stale; {@code true} if otherwise.
+         */
+        boolean fill(CandidateList result, int limit) {
+            WnnWord[] page = new WnnWord[FIRST_BATCH_SIZE];
+            int offset = result.size();
+            while (offset < limit) {
+                if (isStale()) {
+                    return false;
+                }
+                int count = Math.min(FIRST_BATCH_SIZE, limit - offset);
+                int n = mPredictor.getCandidates(offset, count, page);
+                if (isStale()) {
+                    /* the predictor may have stopped in the middle */
+                    return false;
+                }
+                if (n > 0) {
+                    result.add(page, n);
+                    offset += n;
+                    onPage(result);
+                }
+                if (n < count) {
+                    result.setComplete();
+                    break;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Called when a page of the candidates is got.
+         *
+         * @param result    The list of the candidates
+         */
+        void onPage(CandidateList result) {
+        }
+    }
+
+    /**
+     * A request of prediction.
+     */
+    private class Request extends Task {
+        /** The copy of the composing text */
+        private final ComposingText mSnapshot;
+        /** The minimum length of a word to predict */
+        private final int mMinLen;
+        /** The maximum length of a word to predict */
+        private final int mMaxLen;
+        /** The listener */
+        private final Listener mListener;
+        /** The list to add the candidates ({@code null} if not created yet) */
+        private CandidateList mResult;
+        /** Whether the result has been posted */
+        private boolean mPosted = false;
+        /** Whether an update of the result is posted and not applied yet */
+        private volatile boolean mUpdatePosted = false;
+
+        /**
+         * Constructor
+         *
+         * @param sequence  The sequence number
+         * @param engine    The engine
+         * @param predictor The predictor of the engine
+         * @param text      The composing text
+         * @param minLen    The minimum length of a word to predict
+         * @param maxLen    The maximum length of a word to predict
+         * @param listener  The listener of the result
+         * @param result    The list to add the candidates to ({@code null} to create a new one)
+         */
+        Request(int sequence, WnnEngine engine, WnnEngine predictor, ComposingText text,
+                int minLen, int maxLen, Listener listener, CandidateList result) {
+            super(sequence, engine, predictor, text);
+            mSnapshot = text.snapshot();
+            mMinLen = minLen;
+            mMaxLen = maxLen;
+            mListener = listener;
+            mResult = result;
+        }
+
+        /** @see java.lang.Runnable#run */
+        public void run() {
+            if (isStale()) {
+                return;
+            }
+            mCurrentTask = this;
+            try {
+                int count = mPredictor.predict(mSnapshot, mMinLen, mMaxLen);
+                if (isStale()) {
+                    return;
+                }
+                CandidateList result = mResult;
+                if (result == null) {
+                    result = mResult = new CandidateList(count);
+                }
+                if (count <= 0) {
+                    result.setComplete();
+                } else if (!fill(result, MAX_CANDIDATES)) {
+                    return;
+                }
+                if (!mPosted) {
+                    post(result, count);
+                } else {
+                    postUpdate(result);
+                }
+            } finally {
+                mCurrentTask = null;
+            }
+        }
+
+        /** @see Task#onPage */
+        void onPage(CandidateList result) {
+            if (!mPosted) {
+                post(result, result.mCount);
+            } else {
+                postUpdate(result);
+            }
+        }
+
+        /**
+         * Post the result to the queue.
+         *
+         * @param result    The candidates
+         * @param count     The return value of {@link WnnEngine#predict}
+         */
+        void post(final WnnEngine result, final int count) {
+            mPosted = true;
+            mQueue.post(new Runnable() {
+                    public void run() {
+                        if (isStale()) {
+                            return;
+                        }
+                        mListener.onPredicted(result, count);
+                    }
+                });
+        }
+
+        /**
+         * Post the update of the result to the queue.
+         * <br>
+         * The updates are merged until the UI thread applies them.
+         *
+         * @param result    The candidates
+         */
+        void postUpdate(final CandidateList result) {
+            if (mUpdatePosted) {
+                return;
+            }
+            mUpdatePosted = true;
+            mQueue.post(new Runnable() {
+                    public void run() {
+                        /* clear the flag before getting the candidates not to miss an update */
+                        mUpdatePosted = false;
+                        if (isStale()) {
+                            return;
+                        }
+                        mListener.onUpdated(result);
+                    }
+                });
+        }
+    }
+
+    /**
+     * A prefetch of prediction.
+     * <br>
+     * A reading is predicted by a run, and the next run is posted to the
+     * end of the queue of the worker.
+     */
+    private class Prefetch extends Task {
+        /** The readings to predict */
+        private final String[] mReadings;
+        /** {@code Handler} of the worker thread */
+        private final Handler mHandler;
+        /** Index of the next reading */
+        private int mIndex = 0;
+        /** The limit of the elapsed time ({@code SystemClock.uptimeMillis()}; 0 if not started) */
+        private long mDeadline = 0;
+
+        /**
+         * Constructor
+         *
+         * @param sequence  The sequence number
+         * @param engine    The engine
+         * @param predictor The predictor of the engine
+         * @param text      The current composing text
+         * @param readings  The readings to predict
+         * @param handler   {@code Handler} of the worker thread
+         */
+        Prefetch(int sequence, WnnEngine engine, WnnEngine predictor, ComposingText text,
+                 String[] readings, Handler handler) {
+            super(sequence, engine, predictor, text);
+            mReadings = readings;
+            mHandler = handler;
+        }
+
+        /** @see java.lang.Runnable#run */
+        public void run() {
+            long now = SystemClock.uptimeMillis();
+            if (mDeadline == 0) {
+                mDeadline = now + PREFETCH_BUDGET_MS;
+            }
+            if (isStale() || now > mDeadline || mIndex >= mReadings.length) {
+                return;
+            }
+
+            /* no lock is held, so the lower priority delays no other thread */
+            int priority = Process.getThreadPriority(Process.myTid());
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            mCurrentTask = this;
+            try {
+                String reading = mReadings[mIndex++];
+                if (getCache(mEngine, reading) == null) {
+                    CandidateList result = new CandidateList(mPredictor.predict(createText(reading), 0, -1));
+                    if (result.mCount <= 0) {
+                        result.setComplete();
+                        putCache(mEngine, reading, result);
+                    } else if (fill(result, FIRST_BATCH_SIZE)) {
+                        putCache(mEngine, reading, result);
+                    }
+                }
+            } finally {
+                mCurrentTask = null;
+                Process.setThreadPriority(priority);
+            }
+
+            /* let the requests posted meanwhile run first */
+            if (mIndex < mReadings.length && !isStale()) {
+                mHandler.post(this);
+            }
+        }
+
+        /**
+         * Create a composing text of the reading.
+         *
+         * @param reading   The reading
+         * @return          The composing text
+         */
+        private ComposingText createText(String reading) {
+            ComposingText text = new ComposingText();
+            for (int i = 0; i < reading.length(); i++) {
+                text.insertStrSegment(ComposingText.LAYER0, ComposingText.LAYER1,
+                                      text.obtainStrSegment(reading.substring(i, i + 1), -1, -1));
+            }
+            return text;
+        }
+    }
+
+    /**
+     * The list of the candidates got by the worker.
+     * <br>
+     * The worker adds the candidates while the UI thread reads them.  The
+     * UI thread never waits for the worker; it gets only the candidates
+     * added so far, and {@link Listener#onUpdated} is called when more
+     * are added.
+     */
+    private static class CandidateList implements WnnEngine {
+        /** The return value of {@link WnnEngine#predict} */
+        final int mCount;
+        /** The candidates */
+        private ArrayList<WnnWord> mList = new ArrayList<WnnWord>();
+        /** Whether all of the candidates have been added */
+        private volatile boolean mComplete = false;
+        /** Index of the next candidate */
+        private int mIndex = 0;
+
+        /**
+         * Constructor
+         *
+         * @param count     The return value of {@link WnnEngine#predict}
+         */
+        CandidateList(int count) {
+            mCount = count;
+        }
+
+        /**
+         * Add candidates (called by the worker).
+         *
+         * @param words     The candidates
+         * @param count     The number of the candidates in {@code words}
+         */
+        synchronized void add(WnnWord[] words, int count) {
+            for (int i = 0; i < count; i++) {
+                mList.add(words[i]);
+            }
+        }
+
+        /**
+         * Mark that all of the candidates have been added (called by the worker).
+         */
+        void setComplete() {
+            mComplete = true;
+        }
+
+        /**
+         * Whether all of the candidates have been added or not.
+         *
+         * @return      {@code true} if all have been added; {@code false} if the rest may be added.
+         */
+        boolean isComplete() {
+            return mComplete;
+        }
+
+        /**
+         * Get the number of the candidates added.
+         *
+         * @return      The number of the candidates
+         */
+        synchronized int size() {
+            return mList.size();
+        }
+
+        /***********************************************************************
+         * WnnEngine's interface
+         **********************************************************************/
+        /** @see name.yxl.openwnn.WnnEngine#init */
+        public void init() {}
+
+        /** @see name.yxl.openwnn.WnnEngine#close */
+        public void close() {}
+
+        /** @see name.yxl.openwnn.WnnEngine#predict */
+        public synchronized int predict(ComposingText text, int minLen, int maxLen) {
+            mIndex = 0;
+            return (mComplete && mList.isEmpty()) ? 0 : 1;
+        }
+
+        /** @see name.yxl.openwnn.WnnEngine#convert */
+        public int convert(ComposingText text) {return 0;}
+
+        /** @see name.yxl.openwnn.WnnEngine#searchWords */
+        public int searchWords(String key) {return 0;}
+
+        /** @see name.yxl.openwnn.WnnEngine#searchWords */
+        public int searchWords(WnnWord word) {return 0;}
+
+        /** @see name.yxl.openwnn.WnnEngine#getNextCandidate */
+        public synchronized WnnWord getNextCandidate() {
+            if (mIndex >= mList.size()) {
+                return null;
+            }
+            return mList.get(mIndex++);
+        }
+
+        /** @see name.yxl.openwnn.WnnEngine#getCandidates */
+        public synchronized int getCandidates(int offset, int count, WnnWord[] out) {
+            int n = 0;
+            while (n < count && offset + n < mList.size()) {
+                out[n] = mList.get(offset + n);
+                n++;
+            }
+            mIndex = offset + n;
+            return n;
+        }
+
+        /** @see name.yxl.openwnn.WnnEngine#learn */
+        public boolean learn(WnnWord word) {return false;}
+
+        /** @see name.yxl.openwnn.WnnEngine#addWord */
+        public int addWord(WnnWord word) {return 0;}
+
+        /** @see name.yxl.openwnn.WnnEngine#deleteWord */
+        public boolean deleteWord(WnnWord word) {return false;}
+
+        /** @see name.yxl.openwnn.WnnEngine#setPreferences */
+        public void setPreferences(SharedPreferences pref) {}
+
+        /** @see name.yxl.openwnn.WnnEngine#breakSequence */
+        public void breakSequence() {}
+
+        /** @see name.yxl.openwnn.WnnEngine#makeCandidateListOf */
+        public int makeCandidateListOf(int clausePosition) {return 0;}
+
+        /** @see name.yxl.openwnn.WnnEngine#initializeDictionary */
+        public boolean initializeDictionary(int dictionary) {return true;}
+
+        /** @see name.yxl.openwnn.WnnEngine#initializeDictionary */
+        public boolean initializeDictionary(int dictionary, int type) {return true;}
+
+        /** @see name.yxl.openwnn.WnnEngine#getUserDictionaryWords */
+        public WnnWord[] getUserDictionaryWords() {return null;}
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * The scheduler class of prediction.
+ * <br>
+ * This class decides the delay time to start prediction after a key
+ * input.  It tracks the recent intervals of key inputs and the latency
+ * of prediction, and predicts whether the next key input is imminent.
+ * <ul>
+ * <li>If the prediction finishes well before the next key input is
+ * expected (or the user pauses), it starts with no delay.</li>
+ * <li>Otherwise, it waits until the next key input is unlikely to come,
+ * so that the prediction is not wasted.</li>
+ * </ul>
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class PredictionScheduler {
+    /** Maximum delay time(msec.) */
+    public static final int MAX_DELAY_MS = 300;
+
+    /** Interval(msec.) of key inputs regarded as a pause */
+    private static final int PAUSE_INTERVAL_MS = 1000;
+
+    /** Initial value of the average interval(msec.) of key inputs */
+    private static final int INITIAL_INTERVAL_MS = 200;
+
+    /** Initial value of the average latency(msec.) of prediction */
+    private static final int INITIAL_LATENCY_MS = 50;
+
+    /** Weight of the latest sample of the moving averages (1/2^n) */
+    private static final int AVERAGE_SHIFT = 3;
+
+    /** Time of the last key input */
+    private long mLastKeyTime = 0;
+
+    /** Moving average of the intervals of key inputs (msec. * 2^AVERAGE_SHIFT) */
+    private int mInterval = INITIAL_INTERVAL_MS << AVERAGE_SHIFT;
+
+    /** Moving average of the deviation of the intervals (msec. * 2^AVERAGE_SHIFT) */
+    private int mDeviation = (INITIAL_INTERVAL_MS / 2) << AVERAGE_SHIFT;
+
+    /** Moving average of the latency of prediction (msec. * 2^AVERAGE_SHIFT) */
+    private int mLatency = INITIAL_LATENCY_MS << AVERAGE_SHIFT;
+
+    /** Start time of the current prediction (0 if not running) */
+    private long mPredictionStart = 0;
+
+    /** Time of the key input which the current prediction is for */
+    private long mPredictionKeyTime = 0;
+
+    /** Delay time of the last key input */
+    private int mLastDelay = 0;
+
+    /**
+     * Constructor
+     */
+    public PredictionScheduler() {
+    }
+
+    /**
+     * Notify a key input and get the delay time to start prediction.
+     *
+     * @return          The delay time(msec.)
+     */
+    public int onKeyInput() {
+        long now = SystemClock.uptimeMillis();
+        long interval = now - mLastKeyTime;
+        mLastKeyTime = now;
+
+        if (interval >= PAUSE_INTERVAL_MS) {
+            /* the first key after a pause; the next key is not predictable */
+            mLastDelay = (getLatency() * 2 < getInterval()) ? 0 : getInterval();
+        } else {
+            /* update the moving averages */
+            int sample = (int) interval;
+            int error = sample - (mInterval >> AVERAGE_SHIFT);
+            mInterval += error;
+            mDeviation += Math.abs(error) - (mDeviation >> AVERAGE_SHIFT);
+
+            int expected = getInterval();
+            if (getLatency() * 2 < expected - getDeviation()) {
+                /* the prediction will finish before the next key */
+                mLastDelay = 0;
+            } else {
+                /* wait until the next key is unlikely to come */
+                mLastDelay = expected + getDeviation();
+            }
+        }
+
+        if (mLastDelay < 0) {
+            mLastDelay = 0;
+        } else if (mLastDelay > MAX_DELAY_MS) {
+            mLastDelay = MAX_DELAY_MS;
+        }
+        return mLastDelay;
+    }
+
+    /**
+     * Notify the start of prediction.
+     */
+    public void onPredictionStart() {
+        mPredictionStart = SystemClock.uptimeMillis();
+        mPredictionKeyTime = mLastKeyTime;
+    }
+
+    /**
+     * Notify the end of prediction (when the candidates are displayed).
+     */
+    public void onPredictionEnd() {
+        if (mPredictionStart == 0) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        int latency = (int) (now - mPredictionStart);
+        mLatency += latency - (mLatency >> AVERAGE_SHIFT);
+        mPredictionStart = 0;
+
+        if (Log.isLoggable("OpenWnn", Log.DEBUG)) {
+            Log.d("OpenWnn", "PredictionScheduler: delay=" + mLastDelay
+                  + " predict=" + latency
+                  + " key-to-candidate=" + (now - mPredictionKeyTime)
+                  + " (interval=" + getInterval() + "+-" + getDeviation()
+                  + " latency=" + getLatency() + ")");
+        }
+    }
+
+    /**
+     * Get the time to wait until the user is regarded as pausing.
+     *
+     * @return          The time(msec.) after the last key input
+     */
+    public int getPauseDelay() {
+        return Math.min(getInterval() + getDeviation() * 2, PAUSE_INTERVAL_MS);
+    }
+
+    /**
+     * Get the average interval of key inputs.
+     *
+     * @return          The average interval(msec.)
+     */
+    public int getInterval() {
+        return mInterval >> AVERAGE_SHIFT;
+    }
+
+    /**
+     * Get the average deviation of the intervals of key inputs.
+     *
+     * @return          The average deviation(msec.)
+     */
+    public int getDeviation() {
+        return mDeviation >> AVERAGE_SHIFT;
+    }
+
+    /**
+     * Get the average latency of prediction.
+     *
+     * @return          The average latency(msec.)
+     */
+    public int getLatency() {
+        return mLatency >> AVERAGE_SHIFT;
+    }
+}
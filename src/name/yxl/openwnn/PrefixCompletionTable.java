@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The table of the top completions of short prefixes.
+ * <br>
+ * A prefix search with one or two characters matches a great many words
+ * in the dictionaries, though only the top of them are displayed.  This
+ * table holds the top completions of each short prefix in the order of
+ * the dictionary search, so that the prediction for a short prefix is a
+ * single lookup.  Learning a word updates the entries incrementally in
+ * the same way as the learning dictionary orders its words (the latest
+ * word first).
+ * <p>
+ * If the completions of an entry run out before the dictionaries do
+ * ({@link Entry#complete} is {@code false}), the rest must be taken by
+ * searching the dictionaries.
+ * </p><p>
+ * A word evicted from the learning dictionary drops the entries which
+ * have it, and they are built again on the next search.
+ * </p>
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class PrefixCompletionTable implements OpenWnnDictionaryImpl.EvictionListener {
+    /** Maximum length of the prefixes held in the table */
+    public static final int MAX_PREFIX_LENGTH = 2;
+
+    /**
+     * The completions of a prefix.
+     */
+    public static class Entry {
+        /** The words in the order of the dictionary search (no duplicated candidate) */
+        public final ArrayList<WnnWord> words;
+        /** Whether {@code words} holds all the words of the dictionaries or not */
+        public boolean complete;
+
+        /**
+         * Constructor
+         *
+         * @param limit     Maximum number of the words
+         */
+        private Entry(int limit) {
+            words = new ArrayList<WnnWord>(limit);
+            complete = false;
+        }
+    }
+
+    /** Maximum number of the words in an entry */
+    private final int mLimit;
+
+    /** The entries (in the order of access) */
+    private final LinkedHashMap<String, Entry> mTable;
+
+    /**
+     * Constructor
+     *
+     * @param limit         Maximum number of the words in an entry
+     * @param capacity      Maximum number of the entries
+     */
+    public PrefixCompletionTable(int limit, final int capacity) {
+        mLimit = limit;
+        mTable = new LinkedHashMap<String, Entry>(capacity, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Check whether the prefix is held in the table or not.
+     *
+     * @param prefix    The prefix
+     * @return          {@code true} if the prefix is short enough; {@code false} if not.
+     */
+    public static boolean isTarget(String prefix) {
+        int len = prefix.length();
+        return (0 < len && len <= MAX_PREFIX_LENGTH);
+    }
+
+    /**
+     * Get the completions of a prefix.
+     *
+     * @param prefix    The prefix
+     * @return          The entry; {@code null} if the table does not have it.
+     */
+    public Entry get(String prefix) {
+        return mTable.get(prefix);
+    }
+
+    /**
+     * Build the completions of a prefix from the result of the dictionary search.
+     * <br>
+     * The prefix search must have been started by {@link WnnDictionary#searchWord}.
+     * This method takes the words from the dictionary until the number of the
+     * words reaches the limit.
+     *
+     * @param prefix        The prefix
+     * @param dictionary    The dictionary
+     * @return              The entry
+     */
+    public Entry build(String prefix, WnnDictionary dictionary) {
+        Entry entry = new Entry(mLimit);
+        HashSet<String> candidates = new HashSet<String>();
+        ArrayList<WnnWord> words = entry.words;
+        WnnWord word;
+        while (words.size() < mLimit) {
+            if ((word = dictionary.getNextWord()) == null) {
+                entry.complete = true;
+                break;
+            }
+            if (word.candidate != null && candidates.add(word.candidate)) {
+                words.add(word);
+            }
+        }
+        mTable.put(prefix, entry);
+        return entry;
+    }
+
+    /**
+     * Update the entries by a learned word.
+     * <br>
+     * The word is moved to the top of the entries of its prefixes.  On the
+     * approximate search, an entry of another prefix is also updated if it
+     * already has words of the same prefix as the learned word.
+     *
+     * @param word          The learned word
+     * @param frequency     The frequency of the words in the learning dictionary
+     */
+    public void learn(WnnWord word, int frequency) {
+        String stroke = word.stroke;
+        if (stroke == null || stroke.length() == 0 || word.candidate == null) {
+            return;
+        }
+        WnnWord learned = copy(word);
+        learned.frequency = frequency;
+        Iterator<Map.Entry<String, Entry>> it = mTable.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            String prefix = e.getKey();
+            if (prefix.length() > stroke.length()) {
+                continue;
+            }
+            Entry entry = e.getValue();
+            if (stroke.startsWith(prefix) || hasPrefix(entry.words, stroke, prefix.length())) {
+                insert(entry, learned);
+            }
+        }
+    }
+
+    /**
+     * Remove the entries which have a word.
+     *
+     * @param stroke        The stroke of the word
+     * @param candidate     The candidate of the word
+     */
+    public void remove(String stroke, String candidate) {
+        Iterator<Entry> it = mTable.values().iterator();
+        while (it.hasNext()) {
+            ArrayList<WnnWord> words = it.next().words;
+            for (int i = 0; i < words.size(); i++) {
+                WnnWord w = words.get(i);
+                if (candidate.equals(w.candidate) && stroke.equals(w.stroke)) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /** @see name.yxl.openwnn.OpenWnnDictionaryImpl.EvictionListener#onEvicted */
+    public void onEvicted(String stroke, String candidate) {
+        remove(stroke, candidate);
+    }
+
+    /**
+     * Clear the table.
+     */
+    public void clear() {
+        mTable.clear();
+    }
+
+    /**
+     * Make a copy of a word in the table.
+     * <br>
+     * The words in the table must not be modified, because they are shared
+     * by the results of prediction.
+     *
+     * @param word      The word in the table
+     * @return          The copy of the word
+     */
+    public static WnnWord copy(WnnWord word) {
+        return new WnnWord(word.id, word.candidate, word.stroke,
+                           new WnnPOS(word.partOfSpeech.left, word.partOfSpeech.right),
+                           word.frequency, word.attribute);
+    }
+
+    /**
+     * Insert a word to the top of an entry.
+     *
+     * @param entry     The entry
+     * @param word      The word
+     */
+    private void insert(Entry entry, WnnWord word) {
+        ArrayList<WnnWord> words = entry.words;
+        for (int i = 0; i < words.size(); i++) {
+            if (word.candidate.equals(words.get(i).candidate)) {
+                words.remove(i);
+                break;
+            }
+        }
+        words.add(0, word);
+        if (words.size() > mLimit) {
+            words.remove(words.size() - 1);
+            entry.complete = false;
+        }
+    }
+
+    /**
+     * Check whether the words have the same prefix as a stroke.
+     *
+     * @param words     The words
+     * @param stroke    The stroke
+     * @param length    The length of the prefix
+     * @return          {@code true} if found; {@code false} if not.
+     */
+    private static boolean hasPrefix(ArrayList<WnnWord> words, String stroke, int length) {
+        for (int i = 0; i < words.size(); i++) {
+            String s = words.get(i).stroke;
+            if (s != null && s.length() >= length && s.regionMatches(0, stroke, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
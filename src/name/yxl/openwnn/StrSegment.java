@@ -32,6 +32,11 @@ public class StrSegment  {
     /** The end position */
     public int to;
 
+    /** The composing text which may modify this segment in place (used by {@link ComposingText}) */
+    ComposingText owner;
+    /** The epoch of the owner when this segment is owned (used by {@link ComposingText}) */
+    int epoch;
+
     /**
      * Constructor
      */
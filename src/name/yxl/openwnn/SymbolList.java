@@ -19,7 +19,6 @@ package name.yxl.openwnn;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 
 import name.yxl.openwnn.R;
 
@@ -76,8 +75,8 @@ public class SymbolList implements WnnEngine {
     /** current list of symbols */
     private ArrayList<String> mCurrentList;
 
-    /** Iterator for getting symbols from the list */
-    private Iterator<String> mCurrentListIterator;
+    /** Index of the next symbol in the list (-1 if the list is not ready) */
+    private int mCurrentListIndex = -1;
 
     /*
      * DEFINITION OF METHODS
@@ -192,12 +191,12 @@ public class SymbolList implements WnnEngine {
     public int predict(ComposingText text, int minLen, int maxLen) {
         /* ignore if there is no list for the type */
         if (mCurrentList == null) {
-            mCurrentListIterator = null;
+            mCurrentListIndex = -1;
             return 0;
         }
 
-        /* return the iterator of the list */
-        mCurrentListIterator = mCurrentList.iterator();
+        /* rewind the list */
+        mCurrentListIndex = 0;
         return 1;
     }
     
@@ -214,13 +213,28 @@ public class SymbolList implements WnnEngine {
     
     /** @see name.yxl.openwnn.WnnEngine#getNextCandidate */
     public WnnWord getNextCandidate() {
-        if (mCurrentListIterator == null || !mCurrentListIterator.hasNext()) {
+        if (mCurrentList == null || mCurrentListIndex < 0
+            || mCurrentListIndex >= mCurrentList.size()) {
             return null;
         }
-        String str = mCurrentListIterator.next();
+        String str = mCurrentList.get(mCurrentListIndex++);
         WnnWord word = new WnnWord(str, str);
         return word;
     }
+
+    /** @see name.yxl.openwnn.WnnEngine#getCandidates */
+    public int getCandidates(int offset, int count, WnnWord[] out) {
+        if (mCurrentList == null || mCurrentListIndex < 0) {
+            return 0;
+        }
+        int n = 0;
+        while (n < count && offset + n < mCurrentList.size()) {
+            String str = mCurrentList.get(offset + n);
+            out[n++] = new WnnWord(str, str);
+        }
+        mCurrentListIndex = offset + n;
+        return n;
+    }
     
     /** @see name.yxl.openwnn.WnnEngine#learn */
     public boolean learn(WnnWord word) {return false;}
@@ -74,6 +74,8 @@ public class TextCandidatesViewManager implements CandidatesViewManager, Gesture
     private static final int CANDIDATE_LEFT_ALIGN_THRESHOLD = 120;
     /** Maximum number of displaying candidates par one line (full view mode) */
     private static final int FULL_VIEW_DIV = 4;
+    /** Number of candidates got from the converter at once (for "read more") */
+    private static final int CANDIDATE_PAGE_SIZE = 64;
 
     /** Body view of the candidates list */
     private ViewGroup  mViewBody;
@@ -119,6 +121,14 @@ public class TextCandidatesViewManager implements CandidatesViewManager, Gesture
 
     /** Number of candidates displaying */
     private int mWordCount;
+    /** Page of candidates got from the converter */
+    private WnnWord[] mCandidatePage = new WnnWord[CANDIDATE_PAGE_SIZE];
+    /** Number of candidates in {@code mCandidatePage} */
+    private int mCandidatePageCount = 0;
+    /** Index of the next candidate to display in {@code mCandidatePage} */
+    private int mCandidatePageIndex = 0;
+    /** Index of the next candidate to get from the converter */
+    private int mCandidateOffset = 0;
     /** List of candidates */
     private ArrayList<WnnWord> mWnnWordArray;
 
@@ -472,6 +482,9 @@ public class TextCandidatesViewManager implements CandidatesViewManager, Gesture
 
         clearCandidates();
         mConverter = converter;
+        mCandidatePageCount = 0;
+        mCandidatePageIndex = 0;
+        mCandidateOffset = 0;
         setViewLayout(CandidatesViewManager.VIEW_TYPE_NORMAL);
         
         mViewCandidateTemplate.setVisibility(View.VISIBLE);
@@ -480,6 +493,24 @@ public class TextCandidatesViewManager implements CandidatesViewManager, Gesture
         displayCandidates(converter, true, getMaxLine());
     }
 
+    /** @see CandidatesViewManager#updateCandidates */
+    public void updateCandidates(WnnEngine converter) {
+        if (converter != mConverter || mWordCount == 0
+            || mViewType == CandidatesViewManager.VIEW_TYPE_CLOSE) {
+            return;
+        }
+
+        if (mIsFullView) {
+            /* add the candidates to the full view */
+            mCreateCandidateDone = false;
+            displayCandidates(converter, false, -1);
+        } else if (!mCanReadMore) {
+            /* fill the normal view (the rest are got by "read more") */
+            mCreateCandidateDone = false;
+            displayCandidates(converter, true, getMaxLine());
+        }
+    }
+
     /** @see CandidatesViewManager#getMaxLine */
     private int getMaxLine() {
         int maxLine = (mPortrait) ? LINE_NUM_PORTRAIT : LINE_NUM_LANDSCAPE;
@@ -488,12 +519,14 @@ public class TextCandidatesViewManager implements CandidatesViewManager, Gesture
 
     /**
      * Display the candidates.
+     * <br>
+     * This method is called only on the UI thread (see {@link EventQueue}).
      * 
      * @param converter  {@link WnnEngine} which holds candidates.
      * @param dispFirst  Whether it is the first time displaying the candidates
      * @param maxLine    The maximum number of displaying lines
      */
-    synchronized private void displayCandidates(WnnEngine converter, boolean dispFirst, int maxLine) {
+    private void displayCandidates(WnnEngine converter, boolean dispFirst, int maxLine) {
         if (converter == null) {
             return;
         }
@@ -507,11 +540,19 @@ public class TextCandidatesViewManager implements CandidatesViewManager, Gesture
         /* Get candidates */
         WnnWord result = null;
         while ((displayLimit == -1 || mWordCount < displayLimit)) {
-            result = converter.getNextCandidate();
-
-            if (result == null) {
-                break;
+            if (mCandidatePageIndex >= mCandidatePageCount) {
+                /* get the next page (only as many as the first view can show in dispFirst mode) */
+                int count = (dispFirst) ? getFirstPageSize(maxLine) : CANDIDATE_PAGE_SIZE;
+                mCandidatePageCount = converter.getCandidates(mCandidateOffset, count, mCandidatePage);
+                mCandidatePageIndex = 0;
+                if (mCandidatePageCount <= 0) {
+                    mCandidatePageCount = 0;
+                    break;
+                }
+                mCandidateOffset += mCandidatePageCount;
             }
+            result = mCandidatePage[mCandidatePageIndex];
+            mCandidatePage[mCandidatePageIndex++] = null;
 
             setCandidate(false, result);
 
@@ -547,6 +588,22 @@ public class TextCandidatesViewManager implements CandidatesViewManager, Gesture
         return;
     }
 
+    /**
+     * Get the number of candidates to get at first.
+     * <br>
+     * It is the number of candidates which fill the lines of the normal
+     * view when all of them have the minimum width, and one more to know
+     * whether there are more candidates.
+     *
+     * @param maxLine    The maximum number of displaying lines
+     * @return           The number of candidates
+     */
+    private int getFirstPageSize(int maxLine) {
+        int perLine = mViewWidth / Math.max(getCandidateMinimumWidth(), 1);
+        int size = Math.max(perLine, 1) * Math.max(maxLine, 1) + 1;
+        return Math.min(size, CANDIDATE_PAGE_SIZE);
+    }
+
     /**
      * Add a candidate into the list.
      * @param isCategory  {@code true}:caption of category, {@code false}:normal word
@@ -105,6 +105,21 @@ public interface WnnEngine {
      */
     public WnnWord getNextCandidate();
 
+    /**
+     * Get candidates.
+     * <br>
+     * This method gets the candidates of the range specified at once.
+     * The order of the candidates is the same as {@link #getNextCandidate()},
+     * and {@link #getNextCandidate()} returns the candidate following the
+     * last one got by this method.
+     *
+     * @param offset    Index of the first candidate to get
+     * @param count     The maximum number of candidates to get
+     * @param out       The array to store the candidates (its length must be {@code count} or more)
+     * @return          The number of candidates stored into {@code out}; 0 if there is no more candidate.
+     */
+    public int getCandidates(int offset, int count, WnnWord[] out);
+
     /**
      * Retrieve the list of registered words.
      * <br>
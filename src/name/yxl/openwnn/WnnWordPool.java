@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2008,2009  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.yxl.openwnn;
+
+/**
+ * The pool of {@link WnnWord} for the candidates.
+ * <br>
+ * Most of the words searched from the dictionaries on a key input are
+ * dropped as duplicates or never displayed.  An engine returns such words
+ * to this pool, and the dictionary takes the words from it on the next
+ * search, so that the word and its part of speech are not allocated again.
+ * <p>
+ * A word must be recycled only if no one else refers to it; an engine
+ * never recycles the words which it has returned as candidates.  Only the
+ * words made by this pool are recycled (the others are ignored), because
+ * the part of speech of another word may be shared.
+ * </p>
+ * This class is not thread-safe; it must be used with the engine.
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class WnnWordPool {
+    /**
+     * The word made by the pool.
+     */
+    private static class PooledWord extends WnnWord {
+        /** The part of speech owned by this word */
+        private final WnnPOS mPos;
+
+        /**
+         * Constructor
+         */
+        PooledWord() {
+            super(0, null, null, new WnnPOS(), 0, 0);
+            mPos = partOfSpeech;
+        }
+    }
+
+    /** The recycled words */
+    private PooledWord[] mPool;
+
+    /** Number of the recycled words */
+    private int mSize;
+
+    /**
+     * Constructor
+     *
+     * @param capacity      Maximum number of the recycled words
+     */
+    public WnnWordPool(int capacity) {
+        mPool = new PooledWord[capacity];
+        mSize = 0;
+    }
+
+    /**
+     * Get a word.
+     * <br>
+     * The fields of the word are cleared; the part of speech is (0, 0).
+     *
+     * @return      The word
+     */
+    public WnnWord obtain() {
+        PooledWord word;
+        if (mSize > 0) {
+            word = mPool[--mSize];
+            mPool[mSize] = null;
+            word.id = 0;
+            word.candidate = null;
+            word.stroke = null;
+            word.frequency = 0;
+            word.attribute = 0;
+            word.partOfSpeech = word.mPos;
+            word.partOfSpeech.left = 0;
+            word.partOfSpeech.right = 0;
+        } else {
+            word = new PooledWord();
+        }
+        return word;
+    }
+
+    /**
+     * Get a copy of a word.
+     *
+     * @param src   The word to copy
+     * @return      The copy of the word
+     */
+    public WnnWord obtain(WnnWord src) {
+        WnnWord word = obtain();
+        word.id = src.id;
+        word.candidate = src.candidate;
+        word.stroke = src.stroke;
+        word.frequency = src.frequency;
+        word.attribute = src.attribute;
+        word.partOfSpeech.left = src.partOfSpeech.left;
+        word.partOfSpeech.right = src.partOfSpeech.right;
+        return word;
+    }
+
+    /**
+     * Return a word to the pool.
+     *
+     * @param word  The word which no one refers to
+     */
+    public void recycle(WnnWord word) {
+        if (!(word instanceof PooledWord) || mSize >= mPool.length) {
+            return;
+        }
+        word.candidate = null;
+        word.stroke = null;
+        mPool[mSize++] = (PooledWord) word;
+    }
+}